@@ -1,40 +1,166 @@
 package org.canoegame.entity;
 
+import org.canoegame.util.ExpiryEngine;
+import org.canoegame.util.StripedReadBuffer;
+import org.canoegame.util.TimingWheel;
 import org.canoegame.util.TtlEngine;
+import org.canoegame.util.WTinyLfu;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class Cache<E extends Entity<E, ?>> {
-    private static final int CONCURRENCY_LEVEL = 10;
+    private static final int MAX_CONCURRENCY_LEVEL = 1 << 16;
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+    public static final int DEFAULT_CONCURRENCY_LEVEL = ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors());
 //    public static final long DEFAULT_TTL = TimeUnit.MINUTES.toMillis(30);
 
     private final Prefix<E> prefix;
     private final Group<E>[] groups;
+    private final int groupMask;
 
     private final Class<E> elementType;
+    private volatile StatsCounter stats = StatsCounter.DISABLED;
 
     private final boolean canonical;
+    private final long ttl;
 
     Cache(Class<E> elementType, long ttl, boolean canonical) {
+        this(elementType, ttl, canonical, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    Cache(Class<E> elementType, long ttl, boolean canonical, int concurrencyLevel) {
+        this(elementType, ttl, canonical, concurrencyLevel, TtlEngine::new);
+    }
+
+    // engineFactory 决定 expiring 条目的过期引擎
+    Cache(Class<E> elementType, long ttl, boolean canonical, int concurrencyLevel, ExpiryEngine.Factory engineFactory) {
+        this(elementType, canonical, concurrencyLevel, (int)((float)(ttl) * 0.8), ttl, engineFactory, null,
+                UNBOUNDED, null);
+    }
+
+    // maximumWeight 只约束 expiring 条目，manual 条目永不因容量被淘汰
+    Cache(Class<E> elementType, long ttl, boolean canonical, int concurrencyLevel, long maximumWeight,
+          Weigher<E> weigher) {
+        this(elementType, canonical, concurrencyLevel, (int)((float)(ttl) * 0.8), ttl, TtlEngine::new, null,
+                maximumWeight, weigher);
+    }
+
+    // 按条目计算存活时间，由 TimingWheel 承载；prefixTtl 为非 canonical 缓存中前缀完整性的存活时间
+    Cache(Class<E> elementType, Expiry<E> expiry, long prefixTtl, boolean canonical, int concurrencyLevel) {
+        this(elementType, expiry, prefixTtl, canonical, concurrencyLevel, UNBOUNDED, null);
+    }
+
+    Cache(Class<E> elementType, Expiry<E> expiry, long prefixTtl, boolean canonical, int concurrencyLevel,
+          long maximumWeight, Weigher<E> weigher) {
+        this(elementType, canonical, concurrencyLevel, prefixTtl, prefixTtl, TimingWheel::new, expiry,
+                maximumWeight, weigher);
+    }
+
+    // concurrencyLevel 会向上取整为 2 的幂；maximumWeight 平均分给各 group
+    private Cache(Class<E> elementType, boolean canonical, int concurrencyLevel, long prefixTtl,
+                  long ttl, ExpiryEngine.Factory engineFactory, Expiry<E> expiry,
+                  long maximumWeight, Weigher<E> weigher) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel must be positive");
+        }
+
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("maximumWeight must be positive");
+        }
+
         this.elementType = elementType;
         this.canonical = canonical;
+        this.ttl = ttl;
 
         if (canonical) {
             this.prefix = new ManualPrefix<>();
         } else {
-            var prefixTtl = (int)((float)(ttl) * 0.8);
             this.prefix = new TtlPrefix<>(prefixTtl);
         }
 
-        groups = new Group[CONCURRENCY_LEVEL];
-        for (var i = 0; i < CONCURRENCY_LEVEL; i ++) {
-            groups[i] = new Group<>(ttl);
+        var groupCount = ceilingPowerOfTwo(Math.min(concurrencyLevel, MAX_CONCURRENCY_LEVEL));
+        groupMask = groupCount - 1;
+        groups = new Group[groupCount];
+        var groupMaximum = maximumWeight == UNBOUNDED
+                ? UNBOUNDED
+                : Math.max(1, (maximumWeight + groupCount - 1) / groupCount);
+        for (var i = 0; i < groupCount; i ++) {
+            // 条目被淘汰后其所在前缀不再完整
+            groups[i] = new Group<>(ttl, engineFactory, expiry, groupMaximum, weigher, prefix::invalidate);
+        }
+    }
+
+    public int getConcurrencyLevel() {
+        return groups.length;
+    }
+
+    // 开启命中率、加锁等待、淘汰等统计，计数基于 LongAdder，开销很小。须在使用 Cache 之前调用
+    public void enableStats() {
+        var counter = new StatsCounter();
+        for (var g : groups) {
+            g.setStats(counter);
+        }
+        stats = counter;
+    }
+
+    // 未开启统计时各计数均为 0，groupSizes 总是有效
+    public CacheStats stats() {
+        var sizes = new int[groups.length];
+        for (var i = 0; i < groups.length; i++) {
+            sizes[i] = groups[i].size();
+        }
+        return stats.snapshot(sizes);
+    }
+
+    // 周期性地把统计增量输出到 sink，名称为实体类名
+    public ScheduledFuture<?> scheduleReport(ScheduledExecutorService executor, MetricsSink sink,
+                                             long period, TimeUnit unit) {
+        var name = elementType.getSimpleName();
+        var last = new CacheStats[]{stats()};
+        return executor.scheduleWithFixedDelay(() -> {
+            var current = stats();
+            sink.report(name, current.minus(last[0]));
+            last[0] = current;
+        }, period, period, unit);
+    }
+
+    // 每轮 cleanUp 把上一轮以来未被读取的值序列化到堆外，capacity 为堆外内存上限（字节），
+    // 超出后值留在堆内。降级只在 cleanUp 中进行，须配合 scheduleCleanUp 使用。
+    // 反序列化得到的是新对象，与降级之前的实例不是同一个。须在使用 Cache 之前调用
+    public void enableOffHeapTier(EntityCodec<E> codec, long capacity) {
+        var tier = new OffHeapTier<>(codec, capacity);
+        for (var g : groups) {
+            g.setOffHeapTier(tier);
+        }
+    }
+
+    // 不存在的 key 改为以指纹记录在每个 group 的定长过滤器中，不再占用 null holder 与淘汰策略的位置；
+    // 此后 putNullIfAbsent 对不存在的 key 每次返回未缓存的新 holder。记录在 ttl/2 到 ttl 之间失效，
+    // 没有提供 fingerprint 的 key 仍使用 null holder。须在使用 Cache 之前调用
+    public void enableNegativeFilter(int capacity) {
+        var groupCapacity = Math.max(1, (capacity + groups.length - 1) / groups.length);
+        for (var g : groups) {
+            g.setNegative(new NegativeFilter(groupCapacity, ttl / 2));
         }
     }
 
@@ -44,31 +170,142 @@ public class Cache<E extends Entity<E, ?>> {
             return null;
         }
 
-        return group.get(key, prefix.exists(key, false));
+        var exists = prefix.exists(key, false);
+        stats.recordPrefix(exists);
+        return group.get(key, exists);
+    }
+
+    // 按 group 分批查询，每个 group 至多加一次锁；未缓存的 key 不出现在结果中
+    public Map<Key<E>, EntityHolder<E>> getMany(Collection<Key<E>> keys) {
+        Map<Key<E>, EntityHolder<E>> result = new HashMap<>(keys.size() * 2);
+        for (var entry : groupKeys(keys).entrySet()) {
+            entry.getKey().getMany(entry.getValue(), key -> {
+                var exists = prefix.exists(key, false);
+                stats.recordPrefix(exists);
+                return exists;
+            }, result);
+        }
+        return result;
+    }
+
+    // 按 group 分批写入加载结果，values 中没有的 key 记为不存在
+    public Map<Key<E>, EntityHolder<E>> putManyOnFetch(Collection<Key<E>> keys, Map<Key<E>, E> values,
+                                                       boolean expiring) {
+        if (canonical && expiring) {
+            throw new IllegalArgumentException("Canonical cache cannot be expiring");
+        }
+
+        for (var value : values.values()) {
+            if (value != null) {
+                typeCheck(value);
+            }
+        }
+
+        Map<Key<E>, EntityHolder<E>> result = new HashMap<>(keys.size() * 2);
+        for (var entry : groupKeys(keys).entrySet()) {
+            entry.getKey().putManyOnFetch(entry.getValue(), values, expiring, result);
+        }
+        return result;
+    }
+
+    // groupCode 为负的 key 不属于任何 group，直接忽略
+    private Map<Group<E>, List<Key<E>>> groupKeys(Collection<Key<E>> keys) {
+        Map<Group<E>, List<Key<E>>> byGroup = new IdentityHashMap<>();
+        for (var key : keys) {
+            var group = getGroup(key);
+            if (group != null) {
+                byGroup.computeIfAbsent(group, g -> new ArrayList<>()).add(key);
+            }
+        }
+        return byGroup;
+    }
+
+    // 回放所有 group 中积压的访问记录并淘汰过期条目，可由定时任务周期调用
+    public void cleanUp() {
+        for (var g : groups) {
+            g.cleanUp();
+        }
+        prefix.cleanUp();
+    }
+
+    // 由专门的定时任务负责过期淘汰，读写线程此后只回放访问记录，不再承担淘汰开销
+    public ScheduledFuture<?> scheduleCleanUp(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        for (var g : groups) {
+            g.setInlineExpiry(false);
+        }
+
+        return executor.scheduleWithFixedDelay(this::cleanUp, period, period, unit);
     }
 
     public List<EntityHolder<E>> getAll(Key<E> prefixKey) {
-        if (!prefix.exists(prefixKey, true)) {
+        var exists = prefix.exists(prefixKey, true);
+        stats.recordPrefix(exists);
+        if (!exists) {
             return null;
         }
 
-        var group = getGroup(prefixKey);
-        if (group != null) {
-            group.getAll(prefixKey, canonical);
+        if (prefixKey.determinesGroup()) {
+            var group = getGroup(prefixKey);
+            return group == null ? List.of() : group.getAll(prefixKey, canonical);
         }
 
-        List<EntityHolder<E>> all = new ArrayList<>();
+        // 逐个 group 扫描，结果按 group 拼接成只读视图，不再复制到同一个列表
+        List<List<EntityHolder<E>>> parts = new ArrayList<>();
         for (var g : groups) {
-            all.addAll(g.getAll(prefixKey, canonical));
+            if (g.isEmpty()) {
+                continue;
+            }
+
+            var part = g.getAll(prefixKey, canonical);
+            if (!part.isEmpty()) {
+                parts.add(part);
+            }
         }
 
-        return all;
+        return ConcatList.of(parts);
+    }
+
+    // 分页遍历前缀下的条目，前缀不完整时返回 null，与 getAll 一致
+    public ScanCursor<E> scan(Key<E> prefixKey, int pageSize) {
+        return scan(prefixKey, null, pageSize);
+    }
+
+    // 从 resumeKey（不含）之后继续遍历，resumeKey 通常来自上一个游标的 getResumeKey
+    public ScanCursor<E> scan(Key<E> prefixKey, Key<E> resumeKey, int pageSize) {
+        var exists = prefix.exists(prefixKey, true);
+        stats.recordPrefix(exists);
+        if (!exists) {
+            return null;
+        }
+
+        List<Group<E>> targets;
+        if (prefixKey.determinesGroup()) {
+            var group = getGroup(prefixKey);
+            targets = group == null ? List.of() : List.of(group);
+        } else {
+            targets = List.of(groups);
+        }
+
+        return new ScanCursor<>(prefixKey, resumeKey, canonical, pageSize, targets);
+    }
+
+    public boolean isCanonical() {
+        return canonical;
+    }
+
+    void recordLoad(long nanos, boolean success) {
+        stats.recordLoad(nanos, success);
     }
 
     public void putPrefix(Key<E> key) {
         prefix.add(key);
     }
 
+    // 移除覆盖 key 的前缀，与条目被淘汰时相同
+    void invalidatePrefix(Key<E> key) {
+        prefix.invalidate(key);
+    }
+
     public EntityHolder<E> putNullIfAbsent(@NotNull Key<E> key) {
         var group = getGroup(key);
         if (group == null) {
@@ -106,6 +343,22 @@ public class Cache<E extends Entity<E, ?>> {
         return group.putOnStore(key, value, expiring);
     }
 
+    // 新建实体提交时写入，写回落盘之前的读取也能命中；该 key 已缓存了实体时不写入并返回 null。
+    // key 不属于任何 group 时返回不在缓存中的 holder
+    EntityHolder<E> putOnInsert(@NotNull E value, boolean expiring) {
+        if (canonical && expiring) {
+            throw new IllegalArgumentException("Canonical cache cannot be expiring");
+        }
+
+        this.typeCheck(value);
+        var key = value.getKey();
+        var group = getGroup(key);
+        if (group == null) {
+            return new EntityHolder<>(key, value);
+        }
+        return group.putOnInsert(key, value, expiring);
+    }
+
     public void putOnDelete(E value) {
         var key = value.getKey();
         var group = getGroup(key);
@@ -120,7 +373,21 @@ public class Cache<E extends Entity<E, ?>> {
         if (groupCode < 0) {
             return null;
         }
-        return groups[groupCode%CONCURRENCY_LEVEL];
+        return groups[spread(groupCode) & groupMask];
+    }
+
+    // 打散 groupCode 的高低位，避免分布不均的业务 ID 集中到少数几个 group
+    static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static int ceilingPowerOfTwo(int x) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(Math.max(x, 1) - 1));
     }
 
     final void typeCheck(E e) {
@@ -131,52 +398,190 @@ public class Cache<E extends Entity<E, ?>> {
 
     static class Group<E extends Entity<E, ?>> {
         private final ReadWriteLock lock;
+        // manual 与 ttl 中全部 holder 的并发索引，命中时无需加锁
+        private final Map<Key<E>, EntityHolder<E>> index;
+        // 锁外命中的访问记录，持有写锁时批量回放到 ttl
+        private final StripedReadBuffer<EntityHolder<E>> readBuffer;
         private final Manual<E> manual;
         private final Ttl<E> ttl;
-
+        private volatile boolean inlineExpiry = true;
+        // 为 null 时不存在的 key 以 null holder 的形式放入 ttl
+        private volatile NegativeFilter negative;
+        private volatile OffHeapTier<E> offHeapTier;
+        private volatile StatsCounter stats = StatsCounter.DISABLED;
 
         Group(long ttl) {
-            manual = new Manual<>();
-            this.ttl = new Ttl<>(ttl);
+            this(ttl, TtlEngine::new, null, UNBOUNDED, null, null);
+        }
+
+        Group(long ttl, ExpiryEngine.Factory engineFactory, Expiry<E> expiry, long maximumWeight,
+              Weigher<E> weigher, Consumer<Key<E>> evictionListener) {
+            index = new ConcurrentHashMap<>();
+            readBuffer = new StripedReadBuffer<>();
+            manual = new Manual<>(index);
+            this.ttl = new Ttl<>(ttl, engineFactory, expiry, maximumWeight, weigher, evictionListener, index);
             lock = new ReentrantReadWriteLock();
         }
 
+        void setInlineExpiry(boolean inlineExpiry) {
+            this.inlineExpiry = inlineExpiry;
+        }
+
+        void setNegative(NegativeFilter negative) {
+            this.negative = negative;
+        }
+
+        void setOffHeapTier(OffHeapTier<E> offHeapTier) {
+            this.offHeapTier = offHeapTier;
+        }
+
+        void setStats(StatsCounter stats) {
+            this.stats = stats;
+            ttl.setStats(stats);
+        }
+
+        // 无锁读取，只用于统计
+        int size() {
+            return index.size();
+        }
+
         public EntityHolder<E> get(Key<E> key, boolean putNullIfAbsent) {
-            lock.readLock().lock();
+            var hit = getIfPresent(key);
+            if (hit != null) {
+                return hit;
+            }
+
+            var start = System.nanoTime();
+            lock.writeLock().lock();
             try {
-                var ret = manual.get(key);
-                if (ret != null) {
-                    return ret;
-                }
+                stats.recordLockWait(System.nanoTime() - start);
+                return getLocked(key, putNullIfAbsent, maintain());
             } finally {
-                lock.readLock().unlock();
+                lock.writeLock().unlock();
+            }
+        }
+
+        // 先逐个无锁查索引，未命中的 key 共用一次加锁；结果写入 result，未命中且不记录不存在的 key 不写入
+        void getMany(List<Key<E>> keys, Predicate<Key<E>> putNullIfAbsent, Map<Key<E>, EntityHolder<E>> result) {
+            List<Key<E>> misses = null;
+            for (var key : keys) {
+                var hit = getIfPresent(key);
+                if (hit != null) {
+                    result.put(key, hit);
+                } else {
+                    if (misses == null) {
+                        misses = new ArrayList<>(keys.size());
+                    }
+                    misses.add(key);
+                }
+            }
+
+            if (misses == null) {
+                return;
             }
 
+            var start = System.nanoTime();
             lock.writeLock().lock();
             try {
-                var ret = manual.get(key);
-                if (ret != null) {
-                    return ret;
+                stats.recordLockWait(System.nanoTime() - start);
+                var now = maintain();
+                for (var key : misses) {
+                    var ret = getLocked(key, putNullIfAbsent.test(key), now);
+                    if (ret != null) {
+                        result.put(key, ret);
+                    }
                 }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
 
-                ret = ttl.get(key, false);
-                if (ret != null) {
-                    return ret;
+        // 无锁快速路径，未命中返回 null
+        private EntityHolder<E> getIfPresent(Key<E> key) {
+            var hit = index.get(key);
+            if (hit != null) {
+                var state = hit.getState();
+                if (state == EntityHolder.State.MANUAL) {
+                    stats.recordHit();
+                    return hit;
                 }
 
-                if (putNullIfAbsent) {
-                    ret = new EntityHolder<>(key, null);
-                    ttl.put(ret);
+                if (state == EntityHolder.State.EXPIRING && ttl.isAlive(hit)) {
+                    stats.recordHit();
+                    afterRead(hit);
+                    return hit;
+                }
+            } else if (isNegative(key)) {
+                // 已知不存在，无论前缀是否完整都可以直接回答
+                stats.recordNegativeHit();
+                return EntityHolder.absent(key);
+            }
+
+            return null;
+        }
+
+        private boolean isNegative(Key<E> key) {
+            var filter = negative;
+            if (filter == null) {
+                return false;
+            }
+
+            var fingerprint = key.fingerprint();
+            return fingerprint != Key.NO_FINGERPRINT && filter.contains(fingerprint, System.currentTimeMillis());
+        }
+
+        // 须持有写锁，key 没有指纹时返回 false
+        private boolean addNegative(Key<E> key, long now) {
+            var fingerprint = key.fingerprint();
+            if (negative == null || fingerprint == Key.NO_FINGERPRINT) {
+                return false;
+            }
+
+            negative.add(fingerprint, now);
+            return true;
+        }
+
+        private EntityHolder<E> getLocked(Key<E> key, boolean putNullIfAbsent, long now) {
+            var ret = manual.get(key);
+            if (ret != null) {
+                stats.recordHit();
+                return ret;
+            }
+
+            ret = ttl.get(key);
+            if (ret != null) {
+                if (ttl.isAlive(ret, now)) {
+                    stats.recordHit();
+                    ttl.touch(ret, now);
                     return ret;
                 }
 
-                return null;
-            } finally {
-                lock.writeLock().unlock();
+                // 未做内联淘汰时，读到的过期条目在这里单独淘汰
+                stats.recordExpiration();
+                ttl.evict(ret);
             }
+
+            stats.recordMiss();
+            return putNullIfAbsent ? putNull(key, now) : null;
+        }
+
+        private EntityHolder<E> putNull(Key<E> key, long now) {
+            if (addNegative(key, now)) {
+                return EntityHolder.absent(key);
+            }
+
+            var ret = new EntityHolder<E>(key, null);
+            ttl.put(ret);
+            return ret;
+        }
+
+        // 无锁判断，可能读到旧值，只用于跳过空 group
+        boolean isEmpty() {
+            return index.isEmpty();
         }
 
         public List<EntityHolder<E>> getAll(Key<E> prefixKey, boolean canonical) {
+            ensureOrdered();
             if (canonical) {
                 lock.readLock().lock();
                 try {
@@ -186,19 +591,155 @@ public class Cache<E extends Entity<E, ?>> {
                 }
             }
 
+            List<EntityHolder<E>> all;
+            List<EntityHolder<E>> expiring;
             lock.readLock().lock();
             try {
-                var all = manual.getAllWithPrefix(prefixKey);
-                all.addAll(ttl.getAllWithPrefix(prefixKey));
-                return all;
+                all = manual.getAllWithPrefix(prefixKey);
+                expiring = ttl.getAllWithPrefix(prefixKey);
             } finally {
                 lock.readLock().unlock();
             }
+
+            for (var holder : expiring) {
+                afterRead(holder);
+            }
+
+            return ConcatList.of(List.of(all, expiring));
+        }
+
+        // 按 key 顺序归并 manual 与 ttl，返回 after（不含）之后最多 limit 条以 prefixKey 开头的条目；
+        // after 为 null 时从前缀开始
+        List<EntityHolder<E>> scan(Key<E> prefixKey, Key<E> after, boolean canonical, int limit) {
+            if (isEmpty()) {
+                return List.of();
+            }
+
+            ensureOrdered();
+            var from = after == null || after.compareTo(prefixKey) < 0 ? prefixKey : after;
+            var inclusive = from != after;
+            List<EntityHolder<E>> page = new ArrayList<>(Math.min(limit, 64));
+            List<EntityHolder<E>> expiring = new ArrayList<>();
+            lock.readLock().lock();
+            try {
+                var now = System.currentTimeMillis();
+                var manualItr = manual.iterator(from, inclusive);
+                var ttlItr = canonical ? Collections.<EntityHolder<E>>emptyIterator() : ttl.iterator(from, inclusive);
+                var m = next(manualItr, prefixKey);
+                var t = nextAlive(ttlItr, prefixKey, now);
+                while (page.size() < limit && (m != null || t != null)) {
+                    if (t == null || (m != null && m.getKey().compareTo(t.getKey()) < 0)) {
+                        page.add(m);
+                        m = next(manualItr, prefixKey);
+                    } else {
+                        page.add(t);
+                        expiring.add(t);
+                        t = nextAlive(ttlItr, prefixKey, now);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            for (var holder : expiring) {
+                afterRead(holder);
+            }
+
+            return page;
+        }
+
+        private static <E> EntityHolder<E> next(Iterator<EntityHolder<E>> itr, Key<E> prefixKey) {
+            if (!itr.hasNext()) {
+                return null;
+            }
+
+            var holder = itr.next();
+            return prefixKey.isPrefixOf(holder.getKey()) ? holder : null;
+        }
+
+        private EntityHolder<E> nextAlive(Iterator<EntityHolder<E>> itr, Key<E> prefixKey, long now) {
+            for (;;) {
+                var holder = next(itr, prefixKey);
+                if (holder == null || ttl.isAlive(holder, now)) {
+                    return holder;
+                }
+            }
+        }
+
+        // 有序索引在第一次前缀扫描时建立，此后随增删维护
+        private void ensureOrdered() {
+            if (manual.isOrdered() && ttl.isOrdered()) {
+                return;
+            }
+
+            lock.writeLock().lock();
+            try {
+                manual.buildOrdered();
+                ttl.buildOrdered();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void afterRead(EntityHolder<E> holder) {
+            if (readBuffer.offer(holder)) {
+                return;
+            }
+
+            // 缓冲区已满，能拿到写锁就顺手回放，否则丢弃这次访问记录
+            if (lock.writeLock().tryLock()) {
+                try {
+                    maintain();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        public void cleanUp() {
+            lock.writeLock().lock();
+            try {
+                var now = drainReadBuffer();
+                ttl.expire(now);
+                demoteInactive();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // 须持有写锁：上一轮清扫以来未被读取的值降级到堆外
+        private void demoteInactive() {
+            var tier = offHeapTier;
+            if (tier == null) {
+                return;
+            }
+
+            for (var holder : index.values()) {
+                if (!holder.clearReferenced() && holder.demote(tier)) {
+                    stats.recordDemotion();
+                }
+            }
+        }
+
+        // 须持有写锁：回放访问记录，并在内联模式下淘汰过期节点，整批只取一次时间
+        private long maintain() {
+            var now = drainReadBuffer();
+            if (inlineExpiry) {
+                ttl.expire(now);
+            }
+            return now;
+        }
+
+        private long drainReadBuffer() {
+            var now = System.currentTimeMillis();
+            readBuffer.drainTo(holder -> ttl.touch(holder, now));
+            return now;
         }
 
         public EntityHolder<E> putOnFetch(Key<E> key, E value, boolean expiring) {
             lock.writeLock().lock();
             try {
+                maintain();
                 var orig = peek(key);
                 if (orig == null) {
                     return put(key, value, expiring);
@@ -210,16 +751,64 @@ public class Cache<E extends Entity<E, ?>> {
             }
         }
 
+        // 一次加锁写入一批加载结果，values 中没有的 key 记为不存在；已缓存的 key 保留原有 holder
+        void putManyOnFetch(List<Key<E>> keys, Map<Key<E>, E> values, boolean expiring,
+                            Map<Key<E>, EntityHolder<E>> result) {
+            lock.writeLock().lock();
+            try {
+                var now = maintain();
+                for (var key : keys) {
+                    var orig = peek(key);
+                    if (orig == null) {
+                        var value = values.get(key);
+                        orig = value == null ? putNull(key, now) : put(key, value, expiring);
+                    }
+                    result.put(key, orig);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
         public EntityHolder<E> putOnStore(Key<E> key, E value, boolean expiring) {
             lock.writeLock().lock();
             try {
+                maintain();
                 var orig = peek(key);
                 if (orig == null) {
                     return put(key, value, expiring);
                 }
 
                 orig.set(value);
-                switchStore(orig, expiring);
+                if (expiring && orig.getState() == EntityHolder.State.EXPIRING) {
+                    ttl.update(orig);
+                } else {
+                    switchStore(orig, expiring);
+                }
+                return orig;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // 已缓存的“不存在”就地换成新值；negative filter 中的记录由 put 清除
+        EntityHolder<E> putOnInsert(Key<E> key, E value, boolean expiring) {
+            lock.writeLock().lock();
+            try {
+                maintain();
+                var orig = peek(key);
+                if (orig == null) {
+                    return put(key, value, expiring);
+                }
+
+                if (!orig.compareAndSet(EntityHolder.ABSENT_REVISION, value)) {
+                    return null;
+                }
+                if (expiring && orig.getState() == EntityHolder.State.EXPIRING) {
+                    ttl.update(orig);
+                } else {
+                    switchStore(orig, expiring);
+                }
                 return orig;
             } finally {
                 lock.writeLock().unlock();
@@ -229,14 +818,21 @@ public class Cache<E extends Entity<E, ?>> {
         public void putOnDelete(Key<E> key) {
             lock.writeLock().lock();
             try {
+                var now = maintain();
                 var orig = peek(key);
                 if (orig == null) {
-                   ttl.put(new EntityHolder<>(key, null));
-                   return;
+                    if (!addNegative(key, now)) {
+                        ttl.put(new EntityHolder<>(key, null));
+                    }
+                    return;
                 }
 
                 orig.set(null);
-                switchStore(orig, true);
+                if (orig.getState() == EntityHolder.State.EXPIRING) {
+                    ttl.update(orig);
+                } else {
+                    switchStore(orig, true);
+                }
             } finally {
                 lock.writeLock().unlock();
             }
@@ -248,7 +844,7 @@ public class Cache<E extends Entity<E, ?>> {
                 return ret;
             }
 
-            return ttl.get(key, true);
+            return ttl.get(key);
         }
 
         private void switchStore(EntityHolder<E> holder, boolean expiring) {
@@ -275,16 +871,139 @@ public class Cache<E extends Entity<E, ?>> {
         }
 
         private EntityHolder<E> put(Key<E> key, E value, boolean expiring) {
+            EntityHolder<E> holder;
             if (expiring) {
-                return ttl.put(key, value);
+                holder = ttl.put(key, value);
             } else {
-                return manual.put(key, value);
+                holder = manual.put(key, value);
+            }
+
+            // 先放入索引再清除指纹：锁外读取先查索引，两步之间的并发读至多看到写入之前的状态
+            var fingerprint = key.fingerprint();
+            if (negative != null && fingerprint != Key.NO_FINGERPRINT) {
+                negative.remove(fingerprint);
+            }
+            return holder;
+        }
+    }
+
+    // 多个列表首尾相接的只读视图
+    static final class ConcatList<T> extends AbstractList<T> implements RandomAccess {
+        private final List<List<T>> parts;
+        private final int size;
+
+        private ConcatList(List<List<T>> parts) {
+            this.parts = parts;
+            var n = 0;
+            for (var part : parts) {
+                n += part.size();
+            }
+            size = n;
+        }
+
+        static <T> List<T> of(List<List<T>> parts) {
+            List<List<T>> nonEmpty = new ArrayList<>(parts.size());
+            for (var part : parts) {
+                if (!part.isEmpty()) {
+                    nonEmpty.add(part);
+                }
+            }
+
+            return switch (nonEmpty.size()) {
+                case 0 -> List.of();
+                case 1 -> Collections.unmodifiableList(nonEmpty.get(0));
+                default -> new ConcatList<>(nonEmpty);
+            };
+        }
+
+        @Override
+        public T get(int index) {
+            Objects.checkIndex(index, size);
+            for (var part : parts) {
+                if (index < part.size()) {
+                    return part.get(index);
+                }
+                index -= part.size();
+            }
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return parts.stream().flatMap(List::stream).iterator();
+        }
+    }
+
+    // 点查走哈希表；前缀扫描所需的有序索引按需建立，建立后与哈希表同步增删。
+    // 非线程安全，由 Group 的锁保护
+    static class KeyStore<E, V> {
+        private final HashMap<Key<E>, V> store = new HashMap<>();
+        private volatile TreeMap<Key<E>, V> ordered;
+
+        public V get(Key<E> key) {
+            return store.get(key);
+        }
+
+        public void put(Key<E> key, V value) {
+            store.put(key, value);
+            if (ordered != null) {
+                ordered.put(key, value);
+            }
+        }
+
+        public V remove(Key<E> key) {
+            var value = store.remove(key);
+            if (value != null && ordered != null) {
+                ordered.remove(key);
+            }
+            return value;
+        }
+
+        public int size() {
+            return store.size();
+        }
+
+        public boolean isOrdered() {
+            return ordered != null;
+        }
+
+        // 须持有写锁
+        public void buildOrdered() {
+            if (ordered == null) {
+                ordered = new TreeMap<>(store);
+            }
+        }
+
+        // 须先 buildOrdered，按 key 顺序遍历 from 之后的值
+        public Iterator<V> iterator(Key<E> from, boolean inclusive) {
+            return ordered.tailMap(from, inclusive).values().iterator();
+        }
+
+        // 须先 buildOrdered，按 key 顺序遍历以 prefix 开头的全部条目
+        public void forEachWithPrefix(Key<E> prefix, Consumer<V> action) {
+            for (var e : ordered.tailMap(prefix, true).entrySet()) {
+                if (!prefix.isPrefixOf(e.getKey())) {
+                    break;
+                }
+
+                action.accept(e.getValue());
             }
         }
     }
 
     static class Manual<E extends Entity<E, ?>> {
-        private final TreeMap<Key<E>, EntityHolder<E>> store = new TreeMap<>();
+        private final KeyStore<E, EntityHolder<E>> store = new KeyStore<>();
+        private final Map<Key<E>, EntityHolder<E>> index;
+
+        Manual(Map<Key<E>, EntityHolder<E>> index) {
+            this.index = index;
+        }
+
         public EntityHolder<E> get(Key<E> key) {
             return store.get(key);
         }
@@ -305,57 +1024,175 @@ public class Cache<E extends Entity<E, ?>> {
             var key = holder.getKey();
             holder.setState(EntityHolder.State.MANUAL);
             store.put(key, holder);
+            index.put(key, holder);
         }
 
         public void remove(Key<E> key) {
             var holder = store.remove(key);
             holder.setState(EntityHolder.State.UNCACHED);
+            index.remove(key, holder);
         }
 
         public int size() {
             return store.size();
         }
 
-        public List<EntityHolder<E>> getAllWithPrefix(Key<E> prefix) {
-            List<EntityHolder<E>> all = new ArrayList<>();
-            var tailMap = store.tailMap(prefix, true);
-            for (var e : tailMap.entrySet()) {
-                if (!prefix.isPrefixOf(e.getKey())) {
-                    break;
-                }
+        public boolean isOrdered() {
+            return store.isOrdered();
+        }
 
-                all.add(e.getValue());
-            }
+        public void buildOrdered() {
+            store.buildOrdered();
+        }
 
+        public List<EntityHolder<E>> getAllWithPrefix(Key<E> prefix) {
+            List<EntityHolder<E>> all = new ArrayList<>();
+            store.forEachWithPrefix(prefix, all::add);
             return all;
         }
+
+        public Iterator<EntityHolder<E>> iterator(Key<E> from, boolean inclusive) {
+            return store.iterator(from, inclusive);
+        }
     }
 
     static class Ttl<E extends Entity<E, ?>> {
-        private final TreeMap<Key<E>, TtlEngine.Node<EntityHolder<E>>> store;
-        private final TtlEngine<EntityHolder<E>> engine;
-
-        Ttl(long ttl) {
-            store = new TreeMap<>();
-            engine = new TtlEngine<>(ttl, (v) -> {
-                v.set(null);
-                store.remove(v.getKey());
+        private final KeyStore<E, ExpiryEngine.Node<EntityHolder<E>>> store;
+        private final ExpiryEngine<EntityHolder<E>> engine;
+        // 为 null 时使用引擎自身的固定 ttl，读取即续期
+        private final Expiry<E> expiry;
+        // 为 null 时不限容量
+        private final WTinyLfu<EntityHolder<E>> policy;
+        private final Weigher<E> weigher;
+        private final Consumer<Key<E>> evictionListener;
+        private final Map<Key<E>, EntityHolder<E>> index;
+        private StatsCounter stats = StatsCounter.DISABLED;
+
+        Ttl(long ttl, ExpiryEngine.Factory engineFactory, Expiry<E> expiry, long maximumWeight, Weigher<E> weigher,
+            Consumer<Key<E>> evictionListener, Map<Key<E>, EntityHolder<E>> index) {
+            this.index = index;
+            this.expiry = expiry;
+            this.weigher = weigher == null ? Weigher.singleton() : weigher;
+            this.evictionListener = evictionListener;
+            store = new KeyStore<>();
+            engine = engineFactory.create(ttl, holder -> {
+                stats.recordExpiration();
+                onExpire(holder);
+            });
+            policy = maximumWeight == UNBOUNDED ? null : new WTinyLfu<>(maximumWeight, holder -> {
+                stats.recordEviction();
+                evict(holder);
             });
         }
 
-        public EntityHolder<E> get(Key<E> key, boolean peek) {
-            if (!peek) {
-                engine.expire();
+        // 只在值刚写入、还在堆内时调用
+        private int weigh(EntityHolder<E> holder) {
+            var value = holder.peek();
+            return value == null ? 1 : weigher.weigh(holder.getKey(), value);
+        }
+
+        // 先标记 UNCACHED 再清空值：先读值再读状态的一方读到 null 时一定能看到标记，不会当作“不存在”
+        private void onExpire(EntityHolder<E> holder) {
+            holder.setState(EntityHolder.State.UNCACHED);
+            if (holder.hasValue() && evictionListener != null) {
+                evictionListener.accept(holder.getKey());
+            }
+
+            removeFromPolicy(holder);
+            holder.set(null);
+            holder.setTtlNode(null);
+            store.remove(holder.getKey());
+            index.remove(holder.getKey(), holder);
+        }
+
+        public boolean isAlive(EntityHolder<E> holder) {
+            return isAlive(holder, System.currentTimeMillis());
+        }
+
+        public boolean isAlive(EntityHolder<E> holder, long now) {
+            var node = holder.getTtlNode();
+            return node != null && engine.isAlive(node, now);
+        }
+
+        // 与引擎到期淘汰的效果相同
+        public void evict(EntityHolder<E> holder) {
+            var node = holder.getTtlNode();
+            if (node == null) {
+                return;
+            }
+
+            engine.remove(node);
+            onExpire(holder);
+        }
+
+        public void touch(EntityHolder<E> holder, long now) {
+            var node = holder.getTtlNode();
+            if (node == null) {
+                return;
+            }
+
+            if (policy != null) {
+                policy.touch(holder.getPolicyNode());
+            }
+
+            if (expiry == null) {
+                engine.touch(node, now);
+                return;
+            }
+
+            // 回放访问记录不能算作一次读取，值在堆外时不为此反序列化，保持原有的到期时间
+            var value = holder.peek();
+            if (value == null && holder.hasValue()) {
+                return;
+            }
+
+            var current = engine.getExpireTime(node) - now;
+            var ttl = expiry.expireAfterRead(holder.getKey(), value, current);
+            if (ttl != current) {
+                engine.setTtl(node, ttl, now);
+            }
+        }
+
+        // holder 的值已被替换
+        public void update(EntityHolder<E> holder) {
+            var node = holder.getTtlNode();
+            if (node == null) {
+                return;
             }
 
+            if (policy != null) {
+                policy.update(holder.getPolicyNode(), weigh(holder));
+                // 自身可能因权重变大被淘汰
+                if (holder.getTtlNode() == null) {
+                    return;
+                }
+            }
+
+            if (expiry == null) {
+                return;
+            }
+
+            var now = System.currentTimeMillis();
+            var current = engine.getExpireTime(node) - now;
+            engine.setTtl(node, expiry.expireAfterUpdate(holder.getKey(), holder.peek(), current), now);
+        }
+
+        void setStats(StatsCounter stats) {
+            this.stats = stats;
+        }
+
+        public void expire(long now) {
+            stats.recordExpireRun();
+            engine.expire(now);
+        }
+
+        // 只查找，不更新访问顺序
+        public EntityHolder<E> get(Key<E> key) {
             var node = store.get(key);
             if (node == null) {
                 return null;
             }
 
-            if (!peek) {
-                engine.touch(node);
-            }
             return node.getValue();
         }
 
@@ -368,6 +1205,7 @@ public class Cache<E extends Entity<E, ?>> {
             } else {
                 holder = node.getValue();
                 holder.set(value);
+                update(holder);
             }
 
             return holder;
@@ -376,7 +1214,28 @@ public class Cache<E extends Entity<E, ?>> {
         public void put(EntityHolder<E> holder) {
             var key = holder.getKey();
             holder.setState(EntityHolder.State.EXPIRING);
-            store.put(key, engine.add(holder));
+            var node = expiry == null
+                    ? engine.add(holder)
+                    : engine.add(holder, expiry.expireAfterCreate(key, holder.peek()));
+            holder.setTtlNode(node);
+            store.put(key, node);
+            index.put(key, holder);
+
+            // 最后加入淘汰策略：新条目可能立即被拒绝准入
+            if (policy != null) {
+                var policyNode = policy.add(holder, key.hashCode(), weigh(holder));
+                if (!policyNode.isEvicted()) {
+                    holder.setPolicyNode(policyNode);
+                }
+            }
+        }
+
+        private void removeFromPolicy(EntityHolder<E> holder) {
+            var policyNode = holder.getPolicyNode();
+            if (policyNode != null) {
+                policy.remove(policyNode);
+                holder.setPolicyNode(null);
+            }
         }
 
         public void remove(Key<E> key) {
@@ -386,159 +1245,219 @@ public class Cache<E extends Entity<E, ?>> {
             }
 
             engine.remove(node);
-            node.getValue().setState(EntityHolder.State.UNCACHED);
+            var holder = node.getValue();
+            removeFromPolicy(holder);
+            holder.setTtlNode(null);
+            holder.setState(EntityHolder.State.UNCACHED);
+            index.remove(key, holder);
         }
 
         public int size() {
             return store.size();
         }
 
+        // 只读遍历，包含已过期但尚未淘汰的节点
+        public Iterator<EntityHolder<E>> iterator(Key<E> from, boolean inclusive) {
+            var itr = store.iterator(from, inclusive);
+            return new Iterator<>() {
+                public boolean hasNext() {
+                    return itr.hasNext();
+                }
+
+                public EntityHolder<E> next() {
+                    return itr.next().getValue();
+                }
+            };
+        }
+
+        // 只读遍历，可在读锁内调用：跳过已过期节点，访问记录由调用方回放
         public List<EntityHolder<E>> getAllWithPrefix(Key<E> prefix) {
-            engine.expire();
+            var now = System.currentTimeMillis();
             List<EntityHolder<E>> all = new ArrayList<>();
-            var tailMap = store.tailMap(prefix, true);
-            for (var e : tailMap.entrySet()) {
-                if (!prefix.isPrefixOf(e.getKey())) {
-                    break;
+            store.forEachWithPrefix(prefix, node -> {
+                if (engine.isAlive(node, now)) {
+                    all.add(node.getValue());
                 }
-
-                var node = e.getValue();
-                engine.touch(node);
-                all.add(node.getValue());
-            }
+            });
 
             return all;
         }
 
+        public boolean isOrdered() {
+            return store.isOrdered();
+        }
+
+        public void buildOrdered() {
+            store.buildOrdered();
+        }
+
     }
 
     interface Prefix<E> {
         boolean add(Key<E> key);
+        // 移除覆盖 key 的前缀
+        void invalidate(Key<E> key);
         boolean exists(Key<E> key, boolean touch);
         int size();
+        // 清理过期前缀，由 Cache.cleanUp 调用
+        void cleanUp();
     }
+    // 写时复制的前缀表：已注册前缀按 key 排序存放在不可变数组中，互不覆盖；
+    // exists 只读一次 volatile 数组再二分查找，不加锁。add/invalidate 很少发生，串行复制整个数组
     static class ManualPrefix<E> implements Prefix<E> {
-        private final ReadWriteLock lock;
-        private final TreeSet<Key<E>> store;
+        @SuppressWarnings("rawtypes")
+        private static final PrefixEntry[] EMPTY = new PrefixEntry[0];
 
-        ManualPrefix() {
-            this.lock = new ReentrantReadWriteLock();
-            this.store = new TreeSet<>();
-        }
-        public boolean add(Key<E> key) {
-            lock.writeLock().lock();
-            try {
-                if (exists(key, false)) {
-                    return false;
-                }
+        private volatile PrefixEntry<E>[] entries = EMPTY;
 
-                var tailItr = store.tailSet(key, true).iterator();
-                while (tailItr.hasNext()) {
-                    var next = tailItr.next();
-                    if (!key.isPrefixOf(next)) {
-                        break;
-                    }
+        public synchronized boolean add(Key<E> key) {
+            var now = System.currentTimeMillis();
+            var current = entries;
+            var floor = floor(current, key);
+            if (floor >= 0 && current[floor].key.isPrefixOf(key) && isAlive(current[floor], now)) {
+                return false;
+            }
 
-                    tailItr.remove();
+            // 去掉被新前缀覆盖的以及已过期的条目
+            List<PrefixEntry<E>> next = new ArrayList<>(current.length + 1);
+            var inserted = false;
+            for (var entry : current) {
+                if (key.isPrefixOf(entry.key) || !isAlive(entry, now)) {
+                    continue;
                 }
 
-                store.add(key);
-                return true;
-            } finally {
-                lock.writeLock().unlock();
+                if (!inserted && key.compareTo(entry.key) < 0) {
+                    next.add(new PrefixEntry<>(key, now));
+                    inserted = true;
+                }
+                next.add(entry);
+            }
+            if (!inserted) {
+                next.add(new PrefixEntry<>(key, now));
             }
-        }
 
-        public boolean exists(Key<E> key, boolean touch) {
-            lock.readLock().lock();
-            try {
-                var headSet = store.headSet(key, true);
-                if (headSet.isEmpty()) {
-                    return false;
-                }
+            entries = next.toArray(EMPTY);
+            return true;
+        }
 
-                return headSet.last().isPrefixOf(key);
-            } finally {
-                lock.readLock().unlock();
+        public synchronized void invalidate(Key<E> key) {
+            var current = entries;
+            var floor = floor(current, key);
+            if (floor < 0 || !current[floor].key.isPrefixOf(key)) {
+                return;
             }
+
+            var next = new PrefixEntry[current.length - 1];
+            System.arraycopy(current, 0, next, 0, floor);
+            System.arraycopy(current, floor + 1, next, floor, current.length - floor - 1);
+            entries = next;
         }
 
-        public int size() {
-            lock.readLock().lock();
-            try {
-                return store.size();
-            } finally {
-                lock.readLock().unlock();
+        public boolean exists(Key<E> key, boolean touch) {
+            var current = entries;
+            var floor = floor(current, key);
+            if (floor < 0) {
+                return false;
             }
-        }
-    }
 
-    static class TtlPrefix<E> implements Prefix<E> {
-        private final ReadWriteLock lock;
-        private final TreeMap<Key<E>, TtlEngine.Node<Key<E>>> store;
-        private final TtlEngine<Key<E>> engine;
+            var entry = current[floor];
+            if (!entry.key.isPrefixOf(key)) {
+                return false;
+            }
 
-        TtlPrefix(long ttl) {
-            lock = new ReentrantReadWriteLock();
-             store = new TreeMap<>();
-             engine = new TtlEngine<>(ttl, store::remove);
+            var now = System.currentTimeMillis();
+            if (!isAlive(entry, now)) {
+                return false;
+            }
+
+            if (touch) {
+                touch(entry, now);
+            }
+            return true;
         }
+
         public int size() {
-            lock.readLock().lock();
-            try {
-                return store.size();
-            } finally {
-                lock.readLock().unlock();
+            var now = System.currentTimeMillis();
+            var size = 0;
+            for (var entry : entries) {
+                if (isAlive(entry, now)) {
+                    size++;
+                }
             }
+            return size;
         }
-        public boolean add(Key<E> key) {
-            lock.writeLock().lock();
-            try {
-                if (exists(key, false)) {
-                    return false;
-                }
-
-                var tailItr = store.tailMap(key, true).entrySet().iterator();
-                while (tailItr.hasNext()) {
-                    var next = tailItr.next();
-                    if (!key.isPrefixOf(next.getKey())) {
-                        break;
-                    }
 
-                    engine.remove(next.getValue());
-                    tailItr.remove();
+        // 物理移除已过期的条目；过期条目不影响 exists 的结果，只是占用空间
+        public synchronized void cleanUp() {
+            var now = System.currentTimeMillis();
+            var current = entries;
+            List<PrefixEntry<E>> next = new ArrayList<>(current.length);
+            for (var entry : current) {
+                if (isAlive(entry, now)) {
+                    next.add(entry);
                 }
+            }
 
-                store.put(key, engine.add(key));
-                return true;
-            } finally {
-                lock.writeLock().unlock();
+            if (next.size() != current.length) {
+                entries = next.toArray(EMPTY);
             }
+        }
 
+        boolean isAlive(PrefixEntry<E> entry, long now) {
+            return true;
         }
 
-        public boolean exists(Key<E> key, boolean touch) {
-            lock.writeLock().lock();
-            try {
-                engine.expire();
+        void touch(PrefixEntry<E> entry, long now) {
+        }
 
-                var headMap = store.headMap(key, true);
-                if (headMap.isEmpty()) {
-                    return false;
+        // 返回不大于 key 的最后一个条目的下标，没有时返回 -1
+        private static <E> int floor(PrefixEntry<E>[] entries, Key<E> key) {
+            var low = 0;
+            var high = entries.length - 1;
+            while (low <= high) {
+                var mid = (low + high) >>> 1;
+                var cmp = entries[mid].key.compareTo(key);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
                 }
+            }
+            return high;
+        }
+    }
 
-                var theEntry = headMap.lastEntry();
-                if (!theEntry.getKey().isPrefixOf(key)) {
-                    return false;
-                }
+    // 过期采用延迟处理：exists 只比较访问时间，过期条目在下一次 add/invalidate 或 cleanUp 时才被移除
+    static class TtlPrefix<E> extends ManualPrefix<E> {
+        private final long ttl;
 
-                if (touch) {
-                    engine.touch(theEntry.getValue());
-                }
-                return true;
-            } finally {
-                lock.writeLock().unlock();
+        TtlPrefix(long ttl) {
+            this.ttl = ttl;
+        }
+
+        @Override
+        boolean isAlive(PrefixEntry<E> entry, long now) {
+            return now - entry.accessTime < ttl;
+        }
+
+        // 同一毫秒内不重复写，减少热点前缀所在缓存行的争用
+        @Override
+        void touch(PrefixEntry<E> entry, long now) {
+            if (entry.accessTime != now) {
+                entry.accessTime = now;
             }
         }
     }
+
+    static final class PrefixEntry<E> {
+        final Key<E> key;
+        volatile long accessTime;
+
+        PrefixEntry(Key<E> key, long accessTime) {
+            this.key = key;
+            this.accessTime = accessTime;
+        }
+    }
 }
@@ -0,0 +1,78 @@
+package org.canoegame.entity;
+
+import java.util.Arrays;
+
+// Cache 统计的快照，各计数从开启统计起累计；groupSizes 为取快照时每个 group 的条目数
+public record CacheStats(long hitCount, long missCount, long negativeHitCount, long prefixHitCount,
+                         long prefixMissCount, long lockFallbackCount, long lockWaitNanos, long expireRunCount,
+                         long expirationCount, long evictionCount, long demotionCount, long loadSuccessCount,
+                         long loadFailureCount, long loadNanos, int[] groupSizes) {
+
+    public long requestCount() {
+        return hitCount + missCount + negativeHitCount;
+    }
+
+    // 不存在过滤器的命中也算作命中
+    public double hitRate() {
+        var requests = requestCount();
+        return requests == 0 ? 1.0 : (double) (hitCount + negativeHitCount) / requests;
+    }
+
+    public double prefixHitRate() {
+        var total = prefixHitCount + prefixMissCount;
+        return total == 0 ? 1.0 : (double) prefixHitCount / total;
+    }
+
+    public double averageLockWaitNanos() {
+        return lockFallbackCount == 0 ? 0.0 : (double) lockWaitNanos / lockFallbackCount;
+    }
+
+    public double averageExpirationsPerRun() {
+        return expireRunCount == 0 ? 0.0 : (double) expirationCount / expireRunCount;
+    }
+
+    public double averageLoadNanos() {
+        var loads = loadSuccessCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) loadNanos / loads;
+    }
+
+    public long size() {
+        var size = 0L;
+        for (var s : groupSizes) {
+            size += s;
+        }
+        return size;
+    }
+
+    // 两次快照之差，用于按周期上报
+    public CacheStats minus(CacheStats other) {
+        return new CacheStats(hitCount - other.hitCount, missCount - other.missCount,
+                negativeHitCount - other.negativeHitCount, prefixHitCount - other.prefixHitCount,
+                prefixMissCount - other.prefixMissCount, lockFallbackCount - other.lockFallbackCount,
+                lockWaitNanos - other.lockWaitNanos, expireRunCount - other.expireRunCount,
+                expirationCount - other.expirationCount, evictionCount - other.evictionCount,
+                demotionCount - other.demotionCount, loadSuccessCount - other.loadSuccessCount,
+                loadFailureCount - other.loadFailureCount, loadNanos - other.loadNanos, groupSizes);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "hits=" + hitCount +
+                ", misses=" + missCount +
+                ", negativeHits=" + negativeHitCount +
+                ", prefixHits=" + prefixHitCount +
+                ", prefixMisses=" + prefixMissCount +
+                ", lockFallbacks=" + lockFallbackCount +
+                ", lockWaitNanos=" + lockWaitNanos +
+                ", expireRuns=" + expireRunCount +
+                ", expirations=" + expirationCount +
+                ", evictions=" + evictionCount +
+                ", demotions=" + demotionCount +
+                ", loadSuccesses=" + loadSuccessCount +
+                ", loadFailures=" + loadFailureCount +
+                ", loadNanos=" + loadNanos +
+                ", groupSizes=" + Arrays.toString(groupSizes) +
+                '}';
+    }
+}
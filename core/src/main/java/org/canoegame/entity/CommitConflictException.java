@@ -0,0 +1,26 @@
+package org.canoegame.entity;
+
+// 提交时缓存中的实体已被其他副本修改；冲突是重试路径上的常态，因此不填充栈
+public class CommitConflictException extends IllegalStateException {
+    private final Key<?> key;
+    private final int revision;
+
+    CommitConflictException(Key<?> key, int revision) {
+        super("Entity " + key + " changed since revision " + revision);
+        this.key = key;
+        this.revision = revision;
+    }
+
+    public Key<?> getKey() {
+        return key;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
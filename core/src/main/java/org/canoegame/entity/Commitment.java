@@ -1,4 +1,32 @@
 package org.canoegame.entity;
 
+// Entity.commit 的结果，交给 WriteBehind 异步持久化；同一实体的多次提交按先后顺序合并
 public interface Commitment {
+    // 实体类型，通常为生成的实体基类；Storage 据此选择表，主键相同而类型不同的提交互不合并
+    Class<?> getEntityType();
+
+    Key<?> getKey();
+
+    Kind getKind();
+
+    // 本次提交涉及的字段，DELETE 时为空
+    FieldSet<?> getChanges();
+
+    // 合并同一实体较新的 next，返回 null 表示两者相互抵消，无需持久化；不是同一实体时抛出 IllegalArgumentException
+    Commitment merge(Commitment next);
+
+    enum Kind {
+        INSERT,
+        UPDATE,
+        DELETE;
+
+        public static Kind of(Lifecycle lifecycle) {
+            return switch (lifecycle) {
+                case NEW -> INSERT;
+                case NORMAL -> UPDATE;
+                case DELETED -> DELETE;
+                default -> throw new IllegalArgumentException("No commitment for " + lifecycle);
+            };
+        }
+    }
 }
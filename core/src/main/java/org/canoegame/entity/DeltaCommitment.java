@@ -0,0 +1,152 @@
+package org.canoegame.entity;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.FieldMask;
+import com.google.protobuf.WireFormat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// 只携带改动字段的 Commitment：changes 即 FieldMask，data 为只含这些字段的 protobuf 消息片段；
+// mask 中有而 data 中没有的字段表示被清为默认值
+public class DeltaCommitment<E, F extends Enum<F>&Field> implements Commitment {
+    private final Class<?> entityType;
+    private final Key<E> key;
+    private final Kind kind;
+    private final FieldSet<F> changes;
+    private final ByteString data;
+
+    public DeltaCommitment(Class<?> entityType, Key<E> key, Kind kind, FieldSet<F> changes, ByteString data) {
+        this.entityType = entityType;
+        this.key = key;
+        this.kind = kind;
+        this.changes = changes;
+        this.data = data;
+    }
+
+    // 由生成代码调用，逐个序列化 changes 中的字段
+    public static <E, F extends Enum<F>&Field> DeltaCommitment<E, F> of(Class<?> entityType, Key<E> key, Kind kind,
+                                                                      FieldSet<F> changes, FieldWriter<F> writer) {
+        if (changes.isEmpty()) {
+            return new DeltaCommitment<>(entityType, key, kind, changes, ByteString.EMPTY);
+        }
+
+        var output = ByteString.newOutput();
+        var out = CodedOutputStream.newInstance(output);
+        try {
+            for (var field : changes) {
+                writer.write(out, field);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new DeltaCommitment<>(entityType, key, kind, changes, output.toByteString());
+    }
+
+    @Override
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    @Override
+    public Key<E> getKey() {
+        return key;
+    }
+
+    @Override
+    public Kind getKind() {
+        return kind;
+    }
+
+    @Override
+    public FieldSet<F> getChanges() {
+        return changes;
+    }
+
+    public ByteString getData() {
+        return data;
+    }
+
+    public FieldMask getFieldMask() {
+        var mask = FieldMask.newBuilder();
+        for (var field : changes) {
+            mask.addPaths(field.getFieldName());
+        }
+        return mask.build();
+    }
+
+    @Override
+    public Commitment merge(Commitment next) {
+        // 同一实体类型的字段枚举相同，才能按 FieldSet 合并
+        if (!(next instanceof DeltaCommitment<?, ?> d) || d.entityType != entityType || !key.equals(d.key)) {
+            throw new IllegalArgumentException("Cannot merge " + next + " into " + this);
+        }
+
+        var n = (DeltaCommitment<E, F>) d;
+        return switch (kind) {
+            // 尚未落盘的新建实体被删除，两次提交都不必写
+            case INSERT -> switch (n.kind) {
+                case DELETE -> null;
+                default -> overlay(Kind.INSERT, n);
+            };
+            case UPDATE -> switch (n.kind) {
+                case UPDATE -> overlay(Kind.UPDATE, n);
+                default -> n;
+            };
+            // 删除后重建，存储中原有的行被整体覆盖
+            case DELETE -> switch (n.kind) {
+                case INSERT -> new DeltaCommitment<>(entityType, key, Kind.UPDATE, n.changes, n.data);
+                default -> n;
+            };
+        };
+    }
+
+    // 保留本提交中未被 next 改动的字段，再接上 next 的全部字段；repeated 与 message 字段因此整体替换而不是合并
+    private DeltaCommitment<E, F> overlay(Kind kind, DeltaCommitment<E, F> next) {
+        var all = changes.clone();
+        all.addAll(next.changes);
+
+        var output = ByteString.newOutput(data.size() + next.data.size());
+        try {
+            var in = data.newCodedInput();
+            var from = 0;
+            for (;;) {
+                var tag = in.readTag();
+                if (tag == 0) {
+                    break;
+                }
+
+                in.skipField(tag);
+                var to = in.getTotalBytesRead();
+                if (!next.masks(WireFormat.getTagFieldNumber(tag))) {
+                    data.substring(from, to).writeTo(output);
+                }
+                from = to;
+            }
+            next.data.writeTo(output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new DeltaCommitment<>(entityType, key, kind, all, output.toByteString());
+    }
+
+    private boolean masks(int number) {
+        for (var field : changes) {
+            if (field.getNumber() == number) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + entityType.getSimpleName() + " " + key + " " + changes + " (" + data.size() + " bytes)";
+    }
+
+    public interface FieldWriter<F> {
+        void write(CodedOutputStream out, F field) throws IOException;
+    }
+}
@@ -0,0 +1,119 @@
+package org.canoegame.entity;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+// 以 KeyEncoder 编码后的字节串作为主键：比较与前缀判断都是对字节数组的无符号比较，
+// 不回调业务代码，也不分配对象。type 区分不同实体的 key，主键编码相同而类型不同的 key 互不相等
+public final class EncodedKey<E> implements Key<E> {
+    private final Class<?> type;
+    private final byte[] bytes;
+    private final int groupCode;
+    private final int hash;
+
+    // firstFieldEnd 为第一个字段编码的结束位置，没有任何字段时为 -1
+    EncodedKey(Class<?> type, byte[] bytes, int firstFieldEnd) {
+        this.type = type;
+        this.bytes = bytes;
+        // 同一第一字段的 key 及其前缀必须落在同一个 group
+        this.groupCode = firstFieldEnd < 0 ? -1 : hash(bytes, firstFieldEnd) & Integer.MAX_VALUE;
+        this.hash = 31 * Objects.hashCode(type) + Arrays.hashCode(bytes);
+    }
+
+    // 没有指定实体类型时为 null
+    public Class<?> type() {
+        return type;
+    }
+
+    // 返回内部数组，调用方不得修改
+    public byte[] bytes() {
+        return bytes;
+    }
+
+    @Override
+    public boolean isPrefixOf(Key<E> key) {
+        if (!(key instanceof EncodedKey<E> k) || k.type != type || k.bytes.length < bytes.length) {
+            return false;
+        }
+
+        return Arrays.mismatch(bytes, 0, bytes.length, k.bytes, 0, bytes.length) < 0;
+    }
+
+    @Override
+    public int groupCode() {
+        return groupCode;
+    }
+
+    // groupCode 只取决于第一个字段
+    @Override
+    public boolean determinesGroup() {
+        return groupCode >= 0;
+    }
+
+    // 先按类型名再按字节比较，同一类型的 key 排在一起
+    @Override
+    public int compareTo(@NotNull Key<E> o) {
+        var k = (EncodedKey<E>) o;
+        if (k.type != type) {
+            var r = Comparator.nullsFirst(Comparator.<String>naturalOrder())
+                    .compare(typeName(), k.typeName());
+            if (r != 0) {
+                return r;
+            }
+        }
+        return Arrays.compareUnsigned(bytes, k.bytes);
+    }
+
+    // 以类型名为种子，对全部字节做 64 位 FNV-1a 后再混合
+    @Override
+    public long fingerprint() {
+        var h = 0xcbf29ce484222325L ^ Objects.hashCode(typeName());
+        for (var b : bytes) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        return o instanceof EncodedKey<?> k && hash == k.hash && type == k.type && Arrays.equals(bytes, k.bytes);
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder("EncodedKey[");
+        if (type != null) {
+            sb.append(type.getSimpleName()).append(':');
+        }
+        for (var b : bytes) {
+            sb.append(Character.forDigit((b >>> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.append(']').toString();
+    }
+
+    private String typeName() {
+        return type == null ? null : type.getName();
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        var h = 1;
+        for (var i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h;
+    }
+}
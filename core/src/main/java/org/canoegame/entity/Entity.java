@@ -1,6 +1,6 @@
 package org.canoegame.entity;
 
-import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
 
 abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> implements Cloneable{
     private volatile EntityHolder<E> holder;
@@ -8,14 +8,14 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
     private EntityManager entityManager;
 
     private Lifecycle lifecycle;
-    private final EnumSet<EntityFlag> flags;
+    // EntityFlag 的位集合；与 changes 一样用基本类型保存，clone 时随对象复制而不会在副本间共享
+    private int flags;
 
-    private final FieldSet<F> changes;
+    // 以字段号为位的改动集合，提交时才转成 FieldSet
+    private long changes;
 
     public Entity() {
         lifecycle = Lifecycle.Unavailable;
-        flags = EnumSet.noneOf(EntityFlag.class);
-        changes = createFieldSet();
     }
 
     public void setEntityManager(EntityManager entityManager) {
@@ -26,8 +26,9 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
         this.entityManager = entityManager;
     }
 
+    // 尚未交给 EntityManager 管理的实体不做校验
     protected void validateRead() {
-        if (!entityManager.isAccessValidation()) {
+        if (entityManager == null || !entityManager.isAccessValidation()) {
             return;
         }
 
@@ -42,7 +43,7 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
             throw new IllegalStateException("Entity not writable");
         }
 
-        if (!entityManager.isAccessValidation()) {
+        if (entityManager == null || !entityManager.isAccessValidation()) {
             return;
         }
 
@@ -52,6 +53,7 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
         }
     }
 
+    // 实体已不存在时返回 null；未缓存时在 actor 线程上会抛出 IllegalStateException，须改用 readAsync
     public E read() {
         var key = getKey();
         var entity = entityManager.getLocalCopy(key);
@@ -59,15 +61,11 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
             return entity;
         }
 
-        for (;;) {
-            var v = holder.get();
-            if (v != null) {
-                entityManager.putLocalCopy(v);
-                return v;
-            }
-
-            holder = entityManager.refer(getKey());
+        var v = value();
+        if (v != null) {
+            entityManager.putLocalCopy(v);
         }
+        return v;
     }
 
     public E copyWrite() {
@@ -77,29 +75,82 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
             return entity;
         }
 
-        for (;;) {
-            var v = holder.get();
+        var v = value();
+        return writableCopy(holder, v);
+    }
+
+    // 加载完成后在当前 actor 上继续执行
+    public CompletableFuture<E> readAsync() {
+        var entity = entityManager.getLocalCopy(getKey());
+        if (entity != null) {
+            return CompletableFuture.completedFuture(entity);
+        }
+
+        return entityManager.getAsync(entityType(), getKey()).thenApply(v -> {
             if (v != null) {
-                var n = v.clone();
-                n.setFlag(EntityFlag.WRITABLE);
-                entityManager.putLocalCopy(n);
-                return n;
+                entityManager.putLocalCopy(v);
+            }
+            return v;
+        });
+    }
+
+    public CompletableFuture<E> copyWriteAsync() {
+        var entity = entityManager.getLocalCopy(getKey());
+        if (entity != null && entity.hasFlag(EntityFlag.WRITABLE)) {
+            return CompletableFuture.completedFuture(entity);
+        }
+
+        return entityManager.referAsync(entityType(), getKey()).thenApply(h -> writableCopy(h, h.get()));
+    }
+
+    private E writableCopy(EntityHolder<E> h, E v) {
+        if (v == null) {
+            return null;
+        }
+
+        // 副本记住快照所在的 holder，提交时在其上比较 revision
+        Entity<E, F> n = v.clone();
+        n.holder = h;
+        n.setFlag(EntityFlag.WRITABLE);
+        entityManager.putLocalCopy((E) n);
+        return (E) n;
+    }
+
+    // 持有的 holder 过期或被淘汰后才重新获取，缓存的“不存在”直接返回 null
+    private E value() {
+        var h = holder;
+        if (h != null) {
+            var v = h.get();
+            if (!h.isStale()) {
+                return v;
             }
+        }
 
-            holder = entityManager.refer(getKey());
+        for (;;) {
+            h = entityManager.refer(entityType(), getKey());
+            holder = h;
+            // 没能放入缓存的 holder 只用这一次，下次读取重新获取
+            var v = h.get();
+            if (v != null || !h.isStale()) {
+                return v;
+            }
         }
     }
 
+    private Class<E> entityType() {
+        return (Class<E>) getClass();
+    }
+
     protected void setFlag(EntityFlag flag) {
-        flags.add(flag);
+        flags |= 1 << flag.ordinal();
     }
 
     protected void clearFlag(EntityFlag flag) {
-        flags.remove(flag);
+        flags &= ~(1 << flag.ordinal());
     }
 
     public boolean hasFlag(EntityFlag flag) {
-        return flags.contains(flag);
+        return (flags & (1 << flag.ordinal())) != 0;
     }
 
     public void Change(F field) {
@@ -113,7 +164,7 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
                 throw new IllegalStateException("Entity unavailable");
         }
 
-        changes.add(field);
+        changes |= 1L << field.getNumber();
         setFlag(EntityFlag.DIRTY);
     }
 
@@ -137,32 +188,98 @@ abstract public class Entity<E extends Entity<E, F>, F extends Enum<F>&Field> im
         }
     }
 
+    // 以 copyWrite 时快照的 revision 做 CAS，把提交后的快照装入缓存；期间已有其他副本提交时
+    // 抛出 CommitConflictException 并丢弃本地副本，调用方重新 copyWrite 后重试，见 EntityManager.update
     public Commitment commit() {
         validateWrite();
         setFlag(EntityFlag.COMMITTING);
 
+        var expected = getRevision();
         var commitment =  switch (lifecycle) {
             case NEW -> createCommitment(createFieldSet().addAll());
             case NORMAL -> {
                 incrementRevision();
-                yield createCommitment(changes.clone());
+                yield createCommitment(new FieldSet<>(getFieldClass(), changes));
             }
             case DELETED -> createCommitment(createFieldSet());
             default -> null;
         };
 
-        lifecycle = switch (lifecycle) {
+        var next = switch (lifecycle) {
             case NEW -> Lifecycle.NORMAL;
             case DELETED -> Lifecycle.Unavailable;
             default -> lifecycle;
         };
 
-        changes.clear();
+        // 新建的实体还没有 holder，快照直接放入缓存，写回落盘之前读自己的写入也能命中；
+        // 缓存中已有同 key 的实体时按冲突处理
+        var h = holder;
+        E previous = null;
+        E snapshot = null;
+        if (h == null && lifecycle == Lifecycle.NEW && commitment != null) {
+            snapshot = snapshot(next);
+            h = entityManager.insert(entityType(), snapshot);
+            if (h == null) {
+                clearFlag(EntityFlag.COMMITTING);
+                entityManager.removeLocalCopy(getKey());
+                throw new CommitConflictException(getKey(), EntityHolder.ABSENT_REVISION);
+            }
+        } else if (h != null && commitment != null) {
+            previous = h.get();
+            snapshot = next == Lifecycle.NORMAL ? snapshot(next) : null;
+            if (h.isStale() || !h.compareAndSet(expected, snapshot)) {
+                clearFlag(EntityFlag.COMMITTING);
+                entityManager.removeLocalCopy(getKey());
+                throw new CommitConflictException(getKey(), expected);
+            }
+        }
+
+        // 交给写回队列之后才更新状态，队列已满时撤回已装入的快照，实体保持未提交
+        if (commitment != null && !entityManager.persist(commitment)) {
+            if (h != null) {
+                h.compareAndSet(snapshot == null ? EntityHolder.ABSENT_REVISION : snapshot.getRevision(), previous);
+            }
+            clearFlag(EntityFlag.COMMITTING);
+            throw new IllegalStateException("Write-behind queue full");
+        }
+
+        // 不在缓存中的 holder 不留给之后的提交比较
+        if (holder == null && h != null && !h.isStale()) {
+            holder = h;
+        }
+        lifecycle = next;
+        changes = 0;
         clearFlag(EntityFlag.DIRTY);
         clearFlag(EntityFlag.COMMITTING);
         return commitment;
     }
 
+    // 装入缓存的只读快照，不带副本的标记与改动
+    private E snapshot(Lifecycle lifecycle) {
+        Entity<E, F> s = clone();
+        s.lifecycle = lifecycle;
+        s.flags = 0;
+        s.changes = 0;
+        return (E) s;
+    }
+
+    // 从存储加载的实体交给 EntityManager 管理
+    void attach(EntityManager entityManager) {
+        if (this.entityManager == null) {
+            this.entityManager = entityManager;
+        }
+        if (lifecycle == Lifecycle.Unavailable) {
+            lifecycle = Lifecycle.NORMAL;
+        }
+    }
+
+    // 新建的实体交给 EntityManager 管理，主键须已设置；提交后作为 INSERT 写回
+    void attachNew(EntityManager entityManager) {
+        setEntityManager(entityManager);
+        lifecycle = Lifecycle.NEW;
+        setFlag(EntityFlag.WRITABLE);
+    }
+
     private FieldSet<F> createFieldSet() {
         return new FieldSet<>(getFieldClass());
     }
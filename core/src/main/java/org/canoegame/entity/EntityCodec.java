@@ -0,0 +1,8 @@
+package org.canoegame.entity;
+
+// 实体与字节串之间的转换，用于把冷数据降级到堆外；通常直接使用实体对应 protobuf 消息的序列化结果
+public interface EntityCodec<E> {
+    byte[] encode(E value);
+
+    E decode(Key<E> key, byte[] bytes);
+}
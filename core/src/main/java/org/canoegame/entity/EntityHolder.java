@@ -1,25 +1,126 @@
 package org.canoegame.entity;
 
+import org.canoegame.util.ExpiryEngine;
+import org.canoegame.util.WTinyLfu;
+
 public class EntityHolder<V>  {
+    // 值不存在时参与比较的 revision
+    static final int ABSENT_REVISION = -1;
+
     private final Key<V> key;
     private volatile V value;
-    private State state = State.UNCACHED;
+    // 值被降级到堆外时不为 null，此时 value 为 null
+    private volatile OffHeapTier.Ref<V> offHeap;
+    // 自上一轮清扫以来是否被读取过
+    private volatile boolean referenced = true;
+    private volatile State state = State.UNCACHED;
+    private volatile ExpiryEngine.Node<EntityHolder<V>> ttlNode;
+    private WTinyLfu.Node<EntityHolder<V>> policyNode;
 
     EntityHolder(Key<V> key, V value) {
         this.key = key;
         this.value = value;
     }
 
+    // 不进入缓存的“不存在”记录，由 negative filter 命中时返回
+    static <V> EntityHolder<V> absent(Key<V> key) {
+        var holder = new EntityHolder<>(key, (V) null);
+        holder.state = State.ABSENT;
+        return holder;
+    }
+
+    // 已降级到堆外的值在这里透明地反序列化回来
     public V get() {
+        if (!referenced) {
+            referenced = true;
+        }
+
+        var v = value;
+        if (v != null) {
+            return v;
+        }
+
+        if (offHeap != null) {
+            return inflate();
+        }
+
+        // inflate 先写 value 再清 offHeap，重读一次避免与之交错时误读为 null
         return value;
     }
 
+    private synchronized V inflate() {
+        var ref = offHeap;
+        if (ref != null) {
+            value = ref.load(key);
+            offHeap = null;
+            ref.free();
+        }
+        return value;
+    }
+
+    // 只读堆内的值，不标记为被访问，也不反序列化堆外的值，值在堆外时返回 null。供缓存维护使用
+    V peek() {
+        return value;
+    }
+
+    // 不触发反序列化
+    boolean hasValue() {
+        return value != null || offHeap != null;
+    }
+
+    boolean clearReferenced() {
+        var r = referenced;
+        if (r) {
+            referenced = false;
+        }
+        return r;
+    }
+
+    // 先写 offHeap 再清 value，锁外读取看到 value 为 null 时一定能看到 offHeap
+    synchronized boolean demote(OffHeapTier<V> tier) {
+        var v = value;
+        if (v == null || offHeap != null) {
+            return false;
+        }
+
+        var ref = tier.put(v);
+        if (ref == null) {
+            return false;
+        }
+
+        offHeap = ref;
+        value = null;
+        return true;
+    }
+
+    // 当前值的 revision 等于 expectedRevision 时才换成 update，与 set 互斥，锁外的读取不受影响
+    synchronized boolean compareAndSet(int expectedRevision, V update) {
+        var current = get();
+        var revision = current instanceof Entity<?, ?> e ? e.getRevision() : ABSENT_REVISION;
+        if (revision != expectedRevision) {
+            return false;
+        }
+
+        set(update);
+        return true;
+    }
+
     public Key<V> getKey() {
         return key;
     }
 
-    void set(V value) {
+    synchronized void set(V value) {
+        var ref = offHeap;
         this.value = value;
+        offHeap = null;
+        if (ref != null) {
+            ref.free();
+        }
+    }
+
+    // 已过期或被淘汰出缓存，需要重新向 EntityManager 获取
+    boolean isStale() {
+        return state == State.UNCACHED;
     }
 
     State getState() {
@@ -30,9 +131,26 @@ public class EntityHolder<V>  {
         this.state = state;
     }
 
+    ExpiryEngine.Node<EntityHolder<V>> getTtlNode() {
+        return ttlNode;
+    }
+
+    void setTtlNode(ExpiryEngine.Node<EntityHolder<V>> ttlNode) {
+        this.ttlNode = ttlNode;
+    }
+
+    WTinyLfu.Node<EntityHolder<V>> getPolicyNode() {
+        return policyNode;
+    }
+
+    void setPolicyNode(WTinyLfu.Node<EntityHolder<V>> policyNode) {
+        this.policyNode = policyNode;
+    }
+
     enum State {
         UNCACHED,
         MANUAL,
         EXPIRING,
+        ABSENT,
     }
 }
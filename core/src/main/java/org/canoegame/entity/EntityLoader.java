@@ -0,0 +1,38 @@
+package org.canoegame.entity;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// 缓存未命中时从存储加载实体；返回的 future 可以在任意线程完成，EntityManager 负责把结果切回调用方的 actor
+public interface EntityLoader<E> {
+    // 实体不存在时以 null 完成
+    CompletableFuture<E> load(Key<E> key);
+
+    // 批量加载，结果中没有的 key 视为不存在；默认逐个调用 load，存储支持批量查询时应当覆盖
+    default CompletableFuture<Map<Key<E>, E>> loadMany(Collection<Key<E>> keys) {
+        Map<Key<E>, CompletableFuture<E>> futures = new HashMap<>();
+        for (var key : keys) {
+            futures.put(key, load(key));
+        }
+
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+            Map<Key<E>, E> values = new HashMap<>();
+            futures.forEach((key, future) -> {
+                var value = future.join();
+                if (value != null) {
+                    values.put(key, value);
+                }
+            });
+            return values;
+        });
+    }
+
+    // 加载前缀下的全部实体
+    default CompletableFuture<List<E>> loadAll(Key<E> prefix) {
+        return CompletableFuture.failedFuture(
+                new UnsupportedOperationException(getClass().getSimpleName() + " does not support loadAll"));
+    }
+}
@@ -1,14 +1,22 @@
 package org.canoegame.entity;
 
+import org.canoegame.schedule.Actor;
 import org.canoegame.schedule.TaskletLocal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class EntityManager {
     private final TaskletLocal<Map<Key<?>, Entity<?, ?>>> localCopies = new TaskletLocal<>(HashMap::new);
+    private final Map<Class<?>, Registration<?>> registrations = new ConcurrentHashMap<>();
     private boolean accessValidation = true;
+    private volatile WriteBehind writeBehind;
 
     public boolean isAccessValidation() {
         return accessValidation;
@@ -18,6 +26,23 @@ public class EntityManager {
         this.accessValidation = accessValidation;
     }
 
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    // 未设置 WriteBehind 时不持久化；写回队列已满时返回 false
+    boolean persist(Commitment commitment) {
+        var w = writeBehind;
+        return w == null || w.offer(commitment);
+    }
+
+    // 每种实体对应一个 Cache 和一个 EntityLoader，子类实体按最近的已注册父类处理
+    public <E extends Entity<E, ?>> void register(Class<E> type, Cache<E> cache, EntityLoader<E> loader) {
+        if (registrations.putIfAbsent(type, new Registration<>(this, cache, loader)) != null) {
+            throw new IllegalStateException(type.getName() + " already registered");
+        }
+    }
+
     <E extends Entity<E, F>, F extends Enum<F>&Field> E getLocalCopy(Key<E> key) {
         var v = localCopies.get().get(key);
         if (v == null) {
@@ -29,17 +54,330 @@ public class EntityManager {
        localCopies.get().put(entity.getKey(), entity);
     }
 
+    void removeLocalCopy(Key<?> key) {
+        localCopies.get().remove(key);
+    }
+
+    // 新建实体提交后的快照放入缓存；该 key 已有实体时返回 null
+    <E extends Entity<E, ?>> EntityHolder<E> insert(Class<E> type, E snapshot) {
+        var cache = registration(type).cache;
+        return cache.putOnInsert(snapshot, !cache.isCanonical());
+    }
+
+    // 读取最新值、修改并提交；与其他副本冲突时重新读取再试，最多 maxAttempts 次。实体不存在时返回 null
+    public <T extends Entity<T, ?>> Commitment update(Class<T> type, Key<T> key, Consumer<T> mutation,
+                                                     int maxAttempts) {
+        for (var attempt = 1; ; attempt++) {
+            var v = get(type, key);
+            if (v == null) {
+                return null;
+            }
+
+            var copy = v.copyWrite();
+            mutation.accept(copy);
+            try {
+                return copy.commit();
+            } catch (CommitConflictException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+            }
+        }
+    }
+
     public <E extends Entity<E, F>, F extends Enum<F>&Field> E create(Class<E> clazz) {
         return null;
     }
-    public <T extends Entity<T, F>, F extends Enum<F>&Field> T get(Key<T> key) {
-        return null;
+
+    // 新建实体作为当前 tasklet 的本地副本，commit 后放入缓存并写回
+    public <E extends Entity<E, F>, F extends Enum<F>&Field> E add(E entity) {
+        entity.attachNew(this);
+        putLocalCopy(entity);
+        return entity;
     }
-    public <T extends Entity<T, F>, F extends Enum<F>&Field> List<T> getAll(Key<T> key) {
-        return null;
+
+    // 未缓存时，actor 线程上须改用 getAsync，其他线程会等待加载完成；实体不存在时返回 null
+    public <T extends Entity<T, ?>> T get(Class<T> type, Key<T> key) {
+        for (;;) {
+            var holder = refer(type, key);
+            var v = holder.get();
+            if (v != null || !holder.isStale()) {
+                return v;
+            }
+        }
     }
-    public <T extends Entity<T, F>, F extends Enum<F>&Field> EntityHolder<T> refer(Key<T> key) {
-        return null;
+
+    public <T extends Entity<T, ?>> List<T> getAll(Class<T> type, Key<T> prefix) {
+        var all = registration(type).cache.getAll(prefix);
+        if (all == null) {
+            checkBlocking(prefix);
+            all = registration(type).referAll(prefix).join();
+        }
+        return values(all);
+    }
+
+    // 批量获取，结果只包含存在的实体；未缓存时的限制同 get
+    public <T extends Entity<T, ?>> Map<Key<T>, T> getMany(Class<T> type, Collection<Key<T>> keys) {
+        var r = registration(type);
+        var holders = r.cache.getMany(keys);
+        if (!holders.keySet().containsAll(keys)) {
+            checkBlocking(keys.iterator().next());
+            holders = r.referMany(keys).join();
+        }
+        return values(holders);
+    }
+
+    public <T extends Entity<T, ?>> EntityHolder<T> refer(Class<T> type, Key<T> key) {
+        var holder = registration(type).cache.get(key);
+        if (holder != null) {
+            return holder;
+        }
+
+        checkBlocking(key);
+        return registration(type).refer(key).join();
+    }
+
+    // 同一个 key 的并发加载合并为一次；在 actor 上调用时，future 的后续操作回到该 actor 上执行
+    public <T extends Entity<T, ?>> CompletableFuture<EntityHolder<T>> referAsync(Class<T> type, Key<T> key) {
+        return resumeOnActor(registration(type).refer(key));
+    }
+
+    public <T extends Entity<T, ?>> CompletableFuture<T> getAsync(Class<T> type, Key<T> key) {
+        return resumeOnActor(registration(type).refer(key).thenApply(EntityHolder::get));
+    }
+
+    public <T extends Entity<T, ?>> CompletableFuture<List<T>> getAllAsync(Class<T> type, Key<T> prefix) {
+        return resumeOnActor(registration(type).referAll(prefix).thenApply(EntityManager::values));
+    }
+
+    // 各 group 至多加一次锁，所有未命中的 key 合并成一次 loadMany
+    public <T extends Entity<T, ?>> CompletableFuture<Map<Key<T>, T>> getManyAsync(Class<T> type,
+                                                                                 Collection<Key<T>> keys) {
+        return resumeOnActor(registration(type).referMany(keys).thenApply(EntityManager::values));
+    }
+
+    private static <T> Map<Key<T>, T> values(Map<Key<T>, EntityHolder<T>> holders) {
+        Map<Key<T>, T> values = new HashMap<>(holders.size() * 2);
+        holders.forEach((key, holder) -> {
+            var v = holder.get();
+            if (v != null) {
+                values.put(key, v);
+            }
+        });
+        return values;
+    }
+
+    private static <T> List<T> values(List<EntityHolder<T>> holders) {
+        List<T> values = new ArrayList<>(holders.size());
+        for (var holder : holders) {
+            var v = holder.get();
+            if (v != null) {
+                values.add(v);
+            }
+        }
+        return values;
+    }
+
+    private static void checkBlocking(Key<?> key) {
+        if (Actor.currentActor() != null) {
+            throw new IllegalStateException("Entity " + key + " not cached, load it asynchronously on actor threads");
+        }
+    }
+
+    private static <T> CompletableFuture<T> resumeOnActor(CompletableFuture<T> future) {
+        var actor = Actor.currentActor();
+        if (actor == null || future.isDone()) {
+            return future;
+        }
+
+        var resumed = new CompletableFuture<T>();
+        future.whenComplete((v, e) -> actor.execute(() -> {
+            if (e != null) {
+                resumed.completeExceptionally(e);
+            } else {
+                resumed.complete(v);
+            }
+        }));
+        return resumed;
+    }
+
+    private <T extends Entity<T, ?>> Registration<T> registration(Class<T> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            var r = registrations.get(c);
+            if (r != null) {
+                return (Registration<T>) r;
+            }
+        }
+
+        throw new IllegalArgumentException(type.getName() + " not registered");
     }
 
+    private static final class Registration<E extends Entity<E, ?>> {
+        private final EntityManager manager;
+        private final Cache<E> cache;
+        private final EntityLoader<E> loader;
+        // 正在加载的 key，后到的请求直接复用同一个 future
+        private final Map<Key<E>, CompletableFuture<EntityHolder<E>>> loading = new ConcurrentHashMap<>();
+        private final Map<Key<E>, CompletableFuture<List<EntityHolder<E>>>> loadingAll = new ConcurrentHashMap<>();
+
+        Registration(EntityManager manager, Cache<E> cache, EntityLoader<E> loader) {
+            this.manager = manager;
+            this.cache = cache;
+            this.loader = loader;
+        }
+
+        CompletableFuture<EntityHolder<E>> refer(Key<E> key) {
+            var holder = cache.get(key);
+            if (holder != null) {
+                return CompletableFuture.completedFuture(holder);
+            }
+
+            var future = new CompletableFuture<EntityHolder<E>>();
+            var inFlight = loading.putIfAbsent(key, future);
+            if (inFlight != null) {
+                return inFlight;
+            }
+
+            var start = System.nanoTime();
+            load(() -> loader.load(key)).whenComplete((value, e) -> {
+                cache.recordLoad(System.nanoTime() - start, e == null);
+                try {
+                    if (e != null) {
+                        future.completeExceptionally(e);
+                        return;
+                    }
+
+                    // 先写入缓存再移出加载表，之后到达的请求一定能在缓存中命中
+                    if (value != null) {
+                        value.attach(manager);
+                    }
+                    var loaded = value == null ? cache.putNullIfAbsent(key) : cache.putOnFetch(value, !cache.isCanonical());
+                    future.complete(cachedOr(loaded, key, value));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    loading.remove(key, future);
+                }
+            });
+            return future;
+        }
+
+        CompletableFuture<Map<Key<E>, EntityHolder<E>>> referMany(Collection<Key<E>> keys) {
+            var result = cache.getMany(keys);
+            Map<Key<E>, CompletableFuture<EntityHolder<E>>> waiting = new HashMap<>();
+            Map<Key<E>, CompletableFuture<EntityHolder<E>>> owned = new HashMap<>();
+            for (var key : keys) {
+                if (result.containsKey(key) || waiting.containsKey(key) || owned.containsKey(key)) {
+                    continue;
+                }
+
+                var future = new CompletableFuture<EntityHolder<E>>();
+                var inFlight = loading.putIfAbsent(key, future);
+                if (inFlight != null) {
+                    waiting.put(key, inFlight);
+                } else {
+                    owned.put(key, future);
+                }
+            }
+
+            if (waiting.isEmpty() && owned.isEmpty()) {
+                return CompletableFuture.completedFuture(result);
+            }
+
+            if (!owned.isEmpty()) {
+                var misses = new ArrayList<>(owned.keySet());
+                var start = System.nanoTime();
+                load(() -> loader.loadMany(misses)).whenComplete((values, e) -> {
+                    cache.recordLoad(System.nanoTime() - start, e == null);
+                    try {
+                        if (e != null) {
+                            owned.values().forEach(f -> f.completeExceptionally(e));
+                            return;
+                        }
+
+                        values.values().forEach(v -> v.attach(manager));
+                        var loaded = cache.putManyOnFetch(misses, values, !cache.isCanonical());
+                        owned.forEach((key, f) -> {
+                            var holder = loaded.get(key);
+                            f.complete(cachedOr(holder, key, values.get(key)));
+                        });
+                    } catch (Throwable t) {
+                        owned.values().forEach(f -> f.completeExceptionally(t));
+                    } finally {
+                        owned.forEach(loading::remove);
+                    }
+                });
+                waiting.putAll(owned);
+            }
+
+            return CompletableFuture.allOf(waiting.values().toArray(new CompletableFuture[0])).thenApply(v -> {
+                waiting.forEach((key, f) -> result.put(key, f.join()));
+                return result;
+            });
+        }
+
+        CompletableFuture<List<EntityHolder<E>>> referAll(Key<E> prefix) {
+            var all = cache.getAll(prefix);
+            if (all != null) {
+                return CompletableFuture.completedFuture(all);
+            }
+
+            var future = new CompletableFuture<List<EntityHolder<E>>>();
+            var inFlight = loadingAll.putIfAbsent(prefix, future);
+            if (inFlight != null) {
+                return inFlight;
+            }
+
+            var start = System.nanoTime();
+            load(() -> loader.loadAll(prefix)).whenComplete((values, e) -> {
+                cache.recordLoad(System.nanoTime() - start, e == null);
+                try {
+                    if (e != null) {
+                        future.completeExceptionally(e);
+                        return;
+                    }
+
+                    List<EntityHolder<E>> holders = new ArrayList<>(values.size());
+                    for (var value : values) {
+                        value.attach(manager);
+                        holders.add(cache.putOnFetch(value, !cache.isCanonical()));
+                    }
+                    // 全部实体放入缓存之后前缀才算完整。后放入的实体可能挤掉先放入的，而注册前缀之前的淘汰
+                    // 无从使前缀失效，注册之后再检查一遍；之后的淘汰照常使前缀失效
+                    cache.putPrefix(prefix);
+                    for (var i = 0; i < holders.size(); i++) {
+                        var holder = holders.get(i);
+                        if (holder == null || holder.isStale()) {
+                            var value = values.get(i);
+                            cache.invalidatePrefix(value.getKey());
+                            holders.set(i, cachedOr(holder, value.getKey(), value));
+                        }
+                    }
+                    future.complete(holders);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    loadingAll.remove(prefix, future);
+                }
+            });
+            return future;
+        }
+
+        // 没能留在缓存中的加载结果（key 不属于任何 group，或刚放入就被淘汰）换成不在缓存中的 holder：
+        // 值为 null 时须是 ABSENT，否则调用方会当作过期反复加载
+        private static <E> EntityHolder<E> cachedOr(EntityHolder<E> holder, Key<E> key, E value) {
+            if (holder != null && !holder.isStale()) {
+                return holder;
+            }
+            return value == null ? EntityHolder.absent(key) : new EntityHolder<>(key, value);
+        }
+
+        private static <T> CompletableFuture<T> load(java.util.function.Supplier<CompletableFuture<T>> supplier) {
+            try {
+                return supplier.get();
+            } catch (Throwable e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
 }
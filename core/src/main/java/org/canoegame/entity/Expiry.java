@@ -0,0 +1,55 @@
+package org.canoegame.entity;
+
+import java.util.function.ToLongBiFunction;
+
+// 按条目计算 expiring 条目的存活时间（毫秒），value 为 null 表示缓存的是“不存在”；
+// currentTtl 为条目剩余的存活时间，原样返回表示不改变到期时间
+public interface Expiry<E> {
+    long expireAfterCreate(Key<E> key, E value);
+
+    long expireAfterUpdate(Key<E> key, E value, long currentTtl);
+
+    long expireAfterRead(Key<E> key, E value, long currentTtl);
+
+    static <E> Expiry<E> afterWrite(long ttl) {
+        return afterWrite((k, v) -> ttl);
+    }
+
+    static <E> Expiry<E> afterAccess(long ttl) {
+        return afterAccess((k, v) -> ttl);
+    }
+
+    // 写入时按 key、value 计算存活时间，读取不续期
+    static <E> Expiry<E> afterWrite(ToLongBiFunction<Key<E>, E> ttl) {
+        return new Expiry<>() {
+            public long expireAfterCreate(Key<E> key, E value) {
+                return ttl.applyAsLong(key, value);
+            }
+
+            public long expireAfterUpdate(Key<E> key, E value, long currentTtl) {
+                return ttl.applyAsLong(key, value);
+            }
+
+            public long expireAfterRead(Key<E> key, E value, long currentTtl) {
+                return currentTtl;
+            }
+        };
+    }
+
+    // 每次写入或读取都按 key、value 重新计算存活时间
+    static <E> Expiry<E> afterAccess(ToLongBiFunction<Key<E>, E> ttl) {
+        return new Expiry<>() {
+            public long expireAfterCreate(Key<E> key, E value) {
+                return ttl.applyAsLong(key, value);
+            }
+
+            public long expireAfterUpdate(Key<E> key, E value, long currentTtl) {
+                return ttl.applyAsLong(key, value);
+            }
+
+            public long expireAfterRead(Key<E> key, E value, long currentTtl) {
+                return ttl.applyAsLong(key, value);
+            }
+        };
+    }
+}
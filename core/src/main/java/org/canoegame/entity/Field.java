@@ -2,4 +2,9 @@ package org.canoegame.entity;
 
 public interface Field {
     int getNumber();
+
+    // protobuf 中的字段名，用于 FieldMask
+    default String getFieldName() {
+        return toString();
+    }
 }
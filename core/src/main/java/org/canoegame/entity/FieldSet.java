@@ -19,6 +19,11 @@ public class FieldSet<F extends Enum<F>&Field> extends AbstractSet<F> implements
         universe = getUniverse(elementType);
     }
 
+    FieldSet(Class<F> elementType, long elements) {
+        this(elementType);
+        this.elements = elements;
+    }
+
     private static <F extends Enum<F>&Field> F[] getUniverse(Class<F> elementType) {
         var ret = universes.computeIfAbsent(elementType, k -> {
             var all = elementType.getEnumConstants();
@@ -121,8 +126,13 @@ public class FieldSet<F extends Enum<F>&Field> extends AbstractSet<F> implements
         return (es.elements & ~elements) == 0;
     }
 
+    // 只置位实际存在的字段号，否则遍历时会越过 universe
     public FieldSet<F> addAll() {
-        elements = ~0L;
+        for (var i = 0; i < universe.length; i++) {
+            if (universe[i] != null) {
+                elements |= 1L << i;
+            }
+        }
         return this;
     }
 
@@ -4,4 +4,18 @@ public interface Key<E> extends Comparable<Key<E>>{
     boolean isPrefixOf(Key<E> key);
 
     int groupCode();
+
+    // 为 true 表示以它为前缀的 key 都与它有相同的 groupCode，前缀扫描只需访问一个 group
+    default boolean determinesGroup() {
+        return false;
+    }
+
+    // 不提供指纹，不存在的记录退回到带存活时间的 null holder
+    long NO_FINGERPRINT = 0L;
+
+    // 用于不存在记录的 64 位指纹，须由 key 的全部字段计算，不同 key 的指纹相同会导致存在的 key 被误判为不存在。
+    // hashCode 只有 32 位且容易碰撞，不能用来推导，默认不提供指纹，negative filter 对这样的 key 不生效
+    default long fingerprint() {
+        return NO_FINGERPRINT;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.canoegame.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// 按字段顺序把主键编码为保序的字节串：编码结果按无符号字节比较的顺序与字段值的自然顺序一致，
+// 且只写入前几个字段得到的编码恰好是完整编码的前缀。
+// 定长类型大端写入并翻转符号位；变长类型中的 0x00 转义为 0x00 0xFF，以 0x00 0x01 结尾
+public class KeyEncoder {
+    private static final byte ESCAPE = 0x00;
+    private static final byte ESCAPED_ZERO = (byte) 0xFF;
+    private static final byte TERMINATOR = 0x01;
+
+    private byte[] buf;
+    private int size;
+    // 第一个字段的编码长度，用于计算 groupCode
+    private int firstFieldEnd = -1;
+
+    public KeyEncoder() {
+        this(16);
+    }
+
+    public KeyEncoder(int initialCapacity) {
+        buf = new byte[initialCapacity];
+    }
+
+    public KeyEncoder writeInt(int v) {
+        return writeUnsignedInt(v ^ Integer.MIN_VALUE);
+    }
+
+    public KeyEncoder writeUnsignedInt(int v) {
+        ensureCapacity(4);
+        buf[size++] = (byte) (v >>> 24);
+        buf[size++] = (byte) (v >>> 16);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+        return endField();
+    }
+
+    public KeyEncoder writeLong(long v) {
+        return writeUnsignedLong(v ^ Long.MIN_VALUE);
+    }
+
+    public KeyEncoder writeUnsignedLong(long v) {
+        ensureCapacity(8);
+        for (var shift = 56; shift >= 0; shift -= 8) {
+            buf[size++] = (byte) (v >>> shift);
+        }
+        return endField();
+    }
+
+    // 负数翻转全部位，非负数只翻转符号位
+    public KeyEncoder writeFloat(float v) {
+        var bits = Float.floatToIntBits(v);
+        return writeUnsignedInt(bits ^ ((bits >> 31) | Integer.MIN_VALUE));
+    }
+
+    public KeyEncoder writeDouble(double v) {
+        var bits = Double.doubleToLongBits(v);
+        return writeUnsignedLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+    }
+
+    public KeyEncoder writeBoolean(boolean v) {
+        ensureCapacity(1);
+        buf[size++] = (byte) (v ? 1 : 0);
+        return endField();
+    }
+
+    public KeyEncoder writeString(String v) {
+        return writeBytes(v.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public KeyEncoder writeBytes(byte[] v) {
+        var escapes = 0;
+        for (var b : v) {
+            if (b == ESCAPE) {
+                escapes++;
+            }
+        }
+
+        ensureCapacity(v.length + escapes + 2);
+        for (var b : v) {
+            if (b == ESCAPE) {
+                buf[size++] = ESCAPE;
+                buf[size++] = ESCAPED_ZERO;
+            } else {
+                buf[size++] = b;
+            }
+        }
+        buf[size++] = ESCAPE;
+        buf[size++] = TERMINATOR;
+        return endField();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, size);
+    }
+
+    // 不区分实体类型，只适用于单一实体类型的场合
+    public <E> EncodedKey<E> toKey() {
+        return toKey(null);
+    }
+
+    // type 通常为生成的实体基类，编码相同的不同实体类型的 key 互不相等
+    public <E> EncodedKey<E> toKey(Class<?> type) {
+        return new EncodedKey<>(type, toByteArray(), firstFieldEnd);
+    }
+
+    private KeyEncoder endField() {
+        if (firstFieldEnd < 0) {
+            firstFieldEnd = size;
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + extra));
+        }
+    }
+}
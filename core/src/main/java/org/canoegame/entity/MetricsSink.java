@@ -0,0 +1,6 @@
+package org.canoegame.entity;
+
+// Cache 统计的输出目标，由 Cache.scheduleReport 周期调用；stats 为上次上报以来的增量
+public interface MetricsSink {
+    void report(String cacheName, CacheStats stats);
+}
@@ -0,0 +1,53 @@
+package org.canoegame.entity;
+
+import org.canoegame.util.FingerprintFilter;
+
+// 两代 FingerprintFilter 轮换，每隔 period 丢弃较老的一代，记录的“不存在”最多保留两个 period，
+// 与它所替代的 null holder 一样随时间失效。contains 无锁，add/remove 须由调用方串行化
+final class NegativeFilter {
+    private final int capacity;
+    private final long period;
+    // 两代与轮换时间一起替换，读者不会看到拼接出的中间状态
+    private volatile Generations generations;
+
+    NegativeFilter(int capacity, long period) {
+        this.capacity = capacity;
+        this.period = Math.max(1, period);
+        generations = new Generations(new FingerprintFilter(capacity), new FingerprintFilter(capacity),
+                System.currentTimeMillis());
+    }
+
+    boolean contains(long fingerprint, long now) {
+        var g = generations;
+        var age = now - g.rotatedAt;
+        // 轮换只在写入时进行，长时间没有写入时按时间判断哪一代已经过期
+        return age < 2 * period
+                && (g.current.contains(fingerprint) || age < period && g.previous.contains(fingerprint));
+    }
+
+    void add(long fingerprint, long now) {
+        rotate(now).current.add(fingerprint);
+    }
+
+    void remove(long fingerprint) {
+        var g = generations;
+        g.current.remove(fingerprint);
+        g.previous.remove(fingerprint);
+    }
+
+    private Generations rotate(long now) {
+        var g = generations;
+        var age = now - g.rotatedAt;
+        if (age < period) {
+            return g;
+        }
+
+        var previous = age < 2 * period ? g.current : new FingerprintFilter(capacity);
+        g = new Generations(new FingerprintFilter(capacity), previous, now);
+        generations = g;
+        return g;
+    }
+
+    private record Generations(FingerprintFilter current, FingerprintFilter previous, long rotatedAt) {
+    }
+}
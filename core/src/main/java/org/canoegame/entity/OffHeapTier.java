@@ -0,0 +1,38 @@
+package org.canoegame.entity;
+
+import org.canoegame.util.OffHeapStore;
+
+// Cache 的堆外层：长时间未读取的值被序列化后放入 OffHeapStore，EntityHolder 只保留句柄，
+// 下次读取时再反序列化回堆内
+final class OffHeapTier<E> {
+    // 单个实体序列化后不能超过一个 slab
+    static final int SLAB_SIZE = 1 << 20;
+
+    private final OffHeapStore store;
+    private final EntityCodec<E> codec;
+
+    OffHeapTier(EntityCodec<E> codec, long capacity) {
+        this.codec = codec;
+        store = new OffHeapStore(capacity, SLAB_SIZE);
+    }
+
+    // 堆外空间不足时返回 null，值留在堆内
+    Ref<E> put(E value) {
+        var handle = store.put(codec.encode(value));
+        return handle == OffHeapStore.NONE ? null : new Ref<>(this, handle);
+    }
+
+    long getUsedBytes() {
+        return store.getUsedBytes();
+    }
+
+    record Ref<E>(OffHeapTier<E> tier, long handle) {
+        E load(Key<E> key) {
+            return tier.codec.decode(key, tier.store.get(handle));
+        }
+
+        void free() {
+            tier.store.free(handle);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.canoegame.entity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// 按 key 顺序分页遍历前缀下的条目：每个 group 每次只取一页，多个 group 之间做归并，
+// 不会一次性把全部结果放进内存。调用方不再调用 next 即为提前终止，无需释放资源。
+// 非线程安全；遍历期间的增删是否可见取决于发生在哪一页之前
+public final class ScanCursor<E extends Entity<E, ?>> {
+    private final Key<E> prefix;
+    private final boolean canonical;
+    private final int pageSize;
+    private final Source<E>[] sources;
+    private Key<E> resumeKey;
+
+    ScanCursor(Key<E> prefix, Key<E> resumeKey, boolean canonical, int pageSize, List<Cache.Group<E>> groups) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+
+        this.prefix = prefix;
+        this.resumeKey = resumeKey;
+        this.canonical = canonical;
+        this.pageSize = pageSize;
+        sources = new Source[groups.size()];
+        for (var i = 0; i < sources.length; i++) {
+            sources[i] = new Source<>(groups.get(i), resumeKey);
+        }
+    }
+
+    public boolean hasNext() {
+        for (var source : sources) {
+            if (source.peek(this) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 返回下一页，最多 pageSize 条；遍历结束时返回空列表
+    public List<EntityHolder<E>> next() {
+        List<EntityHolder<E>> page = new ArrayList<>(Math.min(pageSize, 64));
+        while (page.size() < pageSize) {
+            Source<E> min = null;
+            EntityHolder<E> minHolder = null;
+            for (var source : sources) {
+                var holder = source.peek(this);
+                if (holder != null && (minHolder == null || holder.getKey().compareTo(minHolder.getKey()) < 0)) {
+                    min = source;
+                    minHolder = holder;
+                }
+            }
+
+            if (min == null) {
+                break;
+            }
+
+            min.buffer.poll();
+            page.add(minHolder);
+            resumeKey = minHolder.getKey();
+        }
+
+        return page;
+    }
+
+    // 最后一个已返回条目的 key，传给 Cache.scan 可从其后继续遍历
+    public Key<E> getResumeKey() {
+        return resumeKey;
+    }
+
+    private static class Source<E extends Entity<E, ?>> {
+        private final Cache.Group<E> group;
+        private final ArrayDeque<EntityHolder<E>> buffer = new ArrayDeque<>();
+        private Key<E> after;
+        private boolean exhausted;
+
+        Source(Cache.Group<E> group, Key<E> after) {
+            this.group = group;
+            this.after = after;
+        }
+
+        EntityHolder<E> peek(ScanCursor<E> cursor) {
+            if (buffer.isEmpty() && !exhausted) {
+                var page = group.scan(cursor.prefix, after, cursor.canonical, cursor.pageSize);
+                exhausted = page.size() < cursor.pageSize;
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1).getKey();
+                    buffer.addAll(page);
+                }
+            }
+
+            return buffer.peek();
+        }
+    }
+}
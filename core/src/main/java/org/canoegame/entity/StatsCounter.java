@@ -0,0 +1,114 @@
+package org.canoegame.entity;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Cache 各热点路径上的计数，基于分段的 LongAdder，多线程累加互不争用；
+// 未开启统计时使用 DISABLED，所有记录方法为空
+class StatsCounter {
+    static final StatsCounter DISABLED = new StatsCounter() {
+        @Override
+        void recordHit() {
+        }
+
+        @Override
+        void recordMiss() {
+        }
+
+        @Override
+        void recordNegativeHit() {
+        }
+
+        @Override
+        void recordPrefix(boolean exists) {
+        }
+
+        @Override
+        void recordLockWait(long nanos) {
+        }
+
+        @Override
+        void recordExpireRun() {
+        }
+
+        @Override
+        void recordExpiration() {
+        }
+
+        @Override
+        void recordEviction() {
+        }
+
+        @Override
+        void recordDemotion() {
+        }
+
+        @Override
+        void recordLoad(long nanos, boolean success) {
+        }
+    };
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder prefixHits = new LongAdder();
+    private final LongAdder prefixMisses = new LongAdder();
+    private final LongAdder lockFallbacks = new LongAdder();
+    private final LongAdder lockWaitNanos = new LongAdder();
+    private final LongAdder expireRuns = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordNegativeHit() {
+        negativeHits.increment();
+    }
+
+    void recordPrefix(boolean exists) {
+        (exists ? prefixHits : prefixMisses).increment();
+    }
+
+    // 无锁读取未能命中、转而等待写锁的耗时
+    void recordLockWait(long nanos) {
+        lockFallbacks.increment();
+        lockWaitNanos.add(nanos);
+    }
+
+    // 一次过期检查，与 expirations 一起可以算出每次检查平均淘汰的条目数
+    void recordExpireRun() {
+        expireRuns.increment();
+    }
+
+    void recordExpiration() {
+        expirations.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordDemotion() {
+        demotions.increment();
+    }
+
+    void recordLoad(long nanos, boolean success) {
+        (success ? loadSuccesses : loadFailures).increment();
+        loadNanos.add(nanos);
+    }
+
+    CacheStats snapshot(int[] groupSizes) {
+        return new CacheStats(hits.sum(), misses.sum(), negativeHits.sum(), prefixHits.sum(), prefixMisses.sum(),
+                lockFallbacks.sum(), lockWaitNanos.sum(), expireRuns.sum(), expirations.sum(), evictions.sum(),
+                demotions.sum(), loadSuccesses.sum(), loadFailures.sum(), loadNanos.sum(), groupSizes);
+    }
+}
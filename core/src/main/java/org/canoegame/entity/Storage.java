@@ -0,0 +1,11 @@
+package org.canoegame.entity;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// WriteBehind 的持久化后端
+public interface Storage {
+    // batch 中同一实体类型的每个 key 至多出现一次，按 Commitment.getEntityType 选择写入的表；
+    // future 完成之前不会写入下一批，失败的提交会重新排队
+    CompletableFuture<Void> write(List<Commitment> batch);
+}
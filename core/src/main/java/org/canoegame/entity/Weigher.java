@@ -0,0 +1,11 @@
+package org.canoegame.entity;
+
+// 计算 expiring 条目在容量上限中所占的权重，须为非负数；值为 null 的条目固定按 1 计
+@FunctionalInterface
+public interface Weigher<E> {
+    int weigh(Key<E> key, E value);
+
+    static <E> Weigher<E> singleton() {
+        return (key, value) -> 1;
+    }
+}
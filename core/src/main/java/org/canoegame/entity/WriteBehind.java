@@ -0,0 +1,208 @@
+package org.canoegame.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// 写回队列：同一实体（实体类型与 key 都相同）的提交在排队期间合并为一条，积满一批或每隔 maxDelay 批量写入 Storage；
+// 同一时刻至多一批在写，保证同一 key 的提交按顺序落盘。offer 不阻塞，可以在 actor 线程上调用
+public class WriteBehind implements AutoCloseable {
+    private final Storage storage;
+    private final ScheduledExecutorService executor;
+    private final int maxBatchSize;
+    private final int maxPending;
+
+    private final Map<EntityId, Commitment> pending = new ConcurrentHashMap<>();
+    // 按首次入队的顺序记录实体，可能有重复或已被抵消的实体，取出时以 pending 为准
+    private final Queue<EntityId> order = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+    private final List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private final ScheduledFuture<?> timer;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public WriteBehind(Storage storage, ScheduledExecutorService executor, int maxBatchSize, int maxPending,
+                       long maxDelay, TimeUnit unit) {
+        if (maxBatchSize <= 0 || maxPending < maxBatchSize) {
+            throw new IllegalArgumentException("Illegal batch size " + maxBatchSize + " or pending limit " + maxPending);
+        }
+
+        this.storage = storage;
+        this.executor = executor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = maxPending;
+        timer = executor.scheduleWithFixedDelay(this::drain, maxDelay, maxDelay, unit);
+    }
+
+    // 已在排队的 key 总能合并进去；排队的 key 数达到上限时拒绝新 key，由调用方决定重试或报错
+    public boolean offer(Commitment commitment) {
+        var key = EntityId.of(commitment);
+        var added = new boolean[1];
+        if (!pending.containsKey(key) && pending.size() >= maxPending) {
+            drain();
+            return false;
+        }
+
+        pending.compute(key, (k, prev) -> {
+            if (prev == null) {
+                added[0] = true;
+                return commitment;
+            }
+
+            coalesced.increment();
+            return prev.merge(commitment);
+        });
+
+        if (added[0]) {
+            order.add(key);
+            if (pending.size() >= maxBatchSize) {
+                drain();
+            }
+        }
+        return true;
+    }
+
+    // 写完此刻之前提交的全部内容后完成
+    public CompletableFuture<Void> flush() {
+        var waiter = new CompletableFuture<Void>();
+        synchronized (waiters) {
+            waiters.add(waiter);
+        }
+        drain();
+        return waiter;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public void close() {
+        timer.cancel(false);
+        flush().join();
+    }
+
+    private void drain() {
+        if (writing.compareAndSet(false, true)) {
+            executor.execute(this::writeNext);
+        }
+    }
+
+    private void writeNext() {
+        var batch = poll();
+        if (batch.isEmpty()) {
+            idle(null);
+            return;
+        }
+
+        CompletableFuture<Void> future;
+        try {
+            future = storage.write(batch);
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.whenComplete((v, e) -> {
+            if (e != null) {
+                failures.increment();
+                requeue(batch);
+                // 等下一次定时写入再重试，避免对故障的存储反复重试
+                idle(e);
+                return;
+            }
+
+            written.add(batch.size());
+            executor.execute(this::writeNext);
+        });
+    }
+
+    private List<Commitment> poll() {
+        List<Commitment> batch = new ArrayList<>(Math.min(maxBatchSize, pending.size()));
+        while (batch.size() < maxBatchSize) {
+            var key = order.poll();
+            if (key == null) {
+                break;
+            }
+
+            var c = pending.remove(key);
+            if (c != null) {
+                batch.add(c);
+            }
+        }
+        return batch;
+    }
+
+    // 写失败的提交放回队列，排在同一 key 后来的提交之前
+    private void requeue(List<Commitment> batch) {
+        for (var c : batch) {
+            var added = new boolean[1];
+            var key = EntityId.of(c);
+            pending.compute(key, (k, newer) -> {
+                if (newer == null) {
+                    added[0] = true;
+                    return c;
+                }
+                return c.merge(newer);
+            });
+
+            if (added[0]) {
+                order.add(key);
+            }
+        }
+    }
+
+    private void idle(Throwable e) {
+        List<CompletableFuture<Void>> done;
+        synchronized (waiters) {
+            done = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+
+        writing.set(false);
+        for (var waiter : done) {
+            if (e != null) {
+                waiter.completeExceptionally(e);
+            } else {
+                waiter.complete(null);
+            }
+        }
+
+        // 释放写入权之前到达的 flush 或积满的批次没能抢到写入权，这里补一次；失败后只响应显式的 flush
+        boolean waiting;
+        synchronized (waiters) {
+            waiting = !waiters.isEmpty();
+        }
+        if (waiting || (e == null && pending.size() >= maxBatchSize)) {
+            drain();
+        }
+    }
+
+    private record EntityId(Class<?> type, Key<?> key) {
+        static EntityId of(Commitment commitment) {
+            return new EntityId(commitment.getEntityType(), commitment.getKey());
+        }
+    }
+}
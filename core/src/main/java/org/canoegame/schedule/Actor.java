@@ -1,11 +1,10 @@
 package org.canoegame.schedule;
 
+import org.canoegame.util.MpscQueue;
+
 import java.util.HashMap;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
@@ -13,18 +12,25 @@ import java.util.logging.Logger;
 public class Actor implements Runnable {
     private final static Logger logger = Logger.getLogger(Actor.class.getName());
     public static final int BATCH_SIZE_ASYNC = 256;
-    public static final int BATCH_SIZE_DELAYED = 64; // n*lg(n) < 256
+    private static final int MAILBOX_CHUNK_SIZE = 256;
     private static final ThreadLocal<Actor> current = new ThreadLocal<>();
 
     private final TaskletContext context;
     private final String name;
-    private final PriorityQueue<ScheduledTasklet> scheduledQueue;
-    private final ConcurrentLinkedQueue<Tasklet> executionQueue;
+    private final MpscQueue<Tasklet> executionQueue;
     private final AtomicReference<ActorState> state;
 
     private ScheduledExecutorService executor;
-    private ScheduledFuture<?> nextScheduledFeature;
-    private long nextScheduledTime;
+    // 未设置时在第一次定时才取共用的定时器，不用定时的 actor 不会启动它的线程
+    private ActorTimer timer;
+    private ActorTrace trace = ActorTrace.LOGGING;
+
+    // 只由运行中的 actor 写入，其他线程读到的是近似值
+    private long runCount;
+    private long executedCount;
+    private long delayedCount;
+    private long failureCount;
+    private int scheduledCount;
 
     private final Map<ActorLocal<?>, Object> storage;
 
@@ -32,8 +38,7 @@ public class Actor implements Runnable {
         this.name = name;
         this.context = context;
         state = new AtomicReference<>(ActorState.WAIT);
-        scheduledQueue = new PriorityQueue<>();
-        executionQueue = new ConcurrentLinkedQueue<>();
+        executionQueue = new MpscQueue<>(MAILBOX_CHUNK_SIZE);
         storage = new HashMap<>();
     }
 
@@ -41,6 +46,14 @@ public class Actor implements Runnable {
         this.executor = executor;
     }
 
+    public void setTimer(ActorTimer timer) {
+        this.timer = timer;
+    }
+
+    public void setTrace(ActorTrace trace) {
+        this.trace = trace;
+    }
+
     public static Actor currentActor() {
         return current.get();
     }
@@ -55,28 +68,68 @@ public class Actor implements Runnable {
 
     public Tasklet execute(String name, Runnable runnable) {
         var tasklet = new Tasklet(name, runnable, this);
-        executionQueue.add(tasklet);
-        switchToReady();
+        wake(tasklet);
         return tasklet;
     }
 
+    // 由 ActorTimer 在定时到期时调用
+    void wake(Tasklet tasklet) {
+        executionQueue.offer(tasklet);
+        switchToReady();
+    }
+
     public ScheduledTasklet schedule(Runnable runnable, long delay, TimeUnit unit) {
         return schedule(null, runnable, delay, unit);
     }
 
     public ScheduledTasklet schedule(String name, Runnable runnable, long delay, TimeUnit unit) {
         var t = new ScheduledTasklet(name, runnable, this, delay, unit);
-        execute(() -> scheduledQueue.add(t));
+        if (currentActor() == this) {
+            arm(t);
+        } else {
+            execute(() -> arm(t));
+        }
         return t;
     }
 
+    // 以下三个方法只在本 actor 上调用；重设时旧的定时作废，换一个新的 Entry
+    void arm(ScheduledTasklet tasklet) {
+        var entry = tasklet.getEntry();
+        if (entry == null) {
+            scheduledCount++;
+        } else {
+            timer().cancel(entry);
+        }
+        tasklet.setEntry(timer().add(tasklet));
+    }
+
     void cancel(ScheduledTasklet tasklet) {
-        scheduledQueue.remove(tasklet);
+        var entry = tasklet.getEntry();
+        if (entry != null) {
+            timer().cancel(entry);
+            tasklet.setEntry(null);
+            scheduledCount--;
+        }
+    }
+
+    private ActorTimer timer() {
+        if (timer == null) {
+            timer = ActorTimer.shared();
+        }
+        return timer;
     }
 
-    void reset(ScheduledTasklet tasklet) {
-        scheduledQueue.remove(tasklet);
-        scheduledQueue.add(tasklet);
+    // 被取消、重设或重复唤醒的 tasklet 返回 false
+    boolean takeDue(ScheduledTasklet tasklet) {
+        var entry = tasklet.getEntry();
+        if (entry == null || !entry.isFired()) {
+            return false;
+        }
+
+        tasklet.setEntry(null);
+        scheduledCount--;
+        delayedCount++;
+        return true;
     }
 
     private void switchToReady() {
@@ -90,87 +143,68 @@ public class Actor implements Runnable {
             return;
         }
 
-        logger.info("Actor " + name + " is running");
+        runCount++;
+        trace.onRun(this);
 
         current.set(this);
-        boolean hasMoreDelayed = false;
         try {
-            hasMoreDelayed = doRun();
+            doRun();
         } catch (Throwable e) {
+            failureCount++;
             logger.warning("Actor " + name + " got exception: " + e);
         } finally {
+            // 先读出再释放 RUNNING，之后的 run 可能已在其他线程开始
+            trace.onIdle(this, !executionQueue.isEmpty());
+
             state.set(ActorState.WAIT);
             current.remove();
 
-            logger.info("Actor " + name + " hasMoreDelayed: " + hasMoreDelayed + ", executionQueue: " + executionQueue.size() + ", scheduledQueue: " + scheduledQueue.size());
-            if (hasMoreDelayed || !executionQueue.isEmpty()) {
+            if (!executionQueue.isEmpty()) {
                 switchToReady();
             }
         }
     }
 
-    private boolean doRun() {
+    private void doRun() {
         var total = BATCH_SIZE_ASYNC;
-        while (!executionQueue.isEmpty()) {
-            // 如果系统退出，则执行完所有任务
-            if (total-- <= 0 && !executor.isShutdown()) {
-                break;
+        // 生产者已占位但尚未写入时 poll 返回 null，run 结束时 isEmpty 为 false，会再次调度
+        for (var tasklet = executionQueue.poll(); tasklet != null; tasklet = executionQueue.poll()) {
+            context.run(tasklet);
+            // 到期的定时在 takeDue 里单独计数
+            if (!(tasklet instanceof ScheduledTasklet)) {
+                executedCount++;
             }
 
-            context.run(executionQueue.poll());
-        }
-
-        total = BATCH_SIZE_DELAYED;
-
-        while (!scheduledQueue.isEmpty()) {
-            var tasklet = scheduledQueue.peek();
-            if (shutDownOrInFuture(tasklet)) {
+            // 如果系统退出，则执行完所有任务
+            if (--total <= 0 && !executor.isShutdown()) {
                 break;
             }
-
-            if (total-- <= 0 && !executor.isShutdown()) {
-                return true;
-            }
-
-            scheduledQueue.remove();
-            context.run(tasklet);
         }
-
-        return false;
     }
 
-    private boolean shutDownOrInFuture(ScheduledTasklet tasklet) {
-        var now = System.nanoTime();
-        var fireTime = tasklet.getTriggerTime();
-        if (fireTime <= now) {
-            return false;
-        }
-
-        if (executor.isShutdown()) {
-            if (nextScheduledFeature != null) {
-                nextScheduledFeature.cancel(false);
-            }
-
-            return true;
-        }
+    public long getRunCount() {
+        return runCount;
+    }
 
-        if (nextScheduledFeature != null) {
-            if (nextScheduledTime == fireTime) {
-                return true;
-            }
+    public long getExecutedCount() {
+        return executedCount;
+    }
 
-            nextScheduledFeature.cancel(false);
-        }
+    public long getDelayedCount() {
+        return delayedCount;
+    }
 
-        nextScheduledTime = fireTime;
-        nextScheduledFeature = executor.schedule(
-                this,
-                fireTime - now,
-                TimeUnit.NANOSECONDS);
+    public long getFailureCount() {
+        return failureCount;
+    }
 
-        return true;
+    public int getPendingCount() {
+        return executionQueue.size();
     }
 
+    public int getScheduledCount() {
+        return scheduledCount;
+    }
 
     <T> void localSet(ActorLocal<T> local, T value) {
         storage.put(local, value);
@@ -0,0 +1,199 @@
+package org.canoegame.schedule;
+
+import org.canoegame.util.MpscQueue;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+// 所有 actor 共用的定时器：一个 ticker 线程独占一个按毫秒推进的哈希时间轮，到期的 ScheduledTasklet
+// 直接放入所属 actor 的执行队列。actor 只把增删请求放进无锁队列，增删都是 O(1)，不与其他 actor 争锁；
+// ticker 只在有定时到期的刻度醒来，没有定时的时候一直挂起，不空转。同一毫秒内到期的定时不保证先后
+public class ActorTimer implements AutoCloseable {
+    private final static Logger logger = Logger.getLogger(ActorTimer.class.getName());
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // 一圈约 1s，更远的定时每圈被扫过一次
+    private static final int WHEEL_SIZE = 1024;
+
+    private final MpscQueue<Entry> requests = new MpscQueue<>(256);
+    private final Entry[] wheel = new Entry[WHEEL_SIZE];
+    private final long startTime = System.nanoTime();
+    private final Thread ticker;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+    // 以下只由 ticker 线程读写
+    private long processedTick;
+    private int size;
+
+    public ActorTimer(String name) {
+        for (var i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Entry(null, 0);
+        }
+
+        ticker = new Thread(this::tick, name);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    public static ActorTimer shared() {
+        return Shared.TIMER;
+    }
+
+    private static final class Shared {
+        static final ActorTimer TIMER = new ActorTimer("canoe-actor-timer");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(ticker);
+    }
+
+    Entry add(ScheduledTasklet tasklet) {
+        var entry = new Entry(tasklet, tasklet.getTriggerTime());
+        submit(entry);
+        return entry;
+    }
+
+    // 已在时间轮上的从轮上摘除，尚未被 ticker 取到的直接忽略
+    void cancel(Entry entry) {
+        entry.cancelled = true;
+        submit(entry);
+    }
+
+    private void submit(Entry entry) {
+        requests.offer(entry);
+        if (sleeping) {
+            LockSupport.unpark(ticker);
+        }
+    }
+
+    private void tick() {
+        while (!closed) {
+            var now = currentTick();
+            // 轮上没有定时，空着的刻度不必逐个走过
+            if (size == 0) {
+                processedTick = now;
+            }
+
+            for (var e = requests.poll(); e != null; e = requests.poll()) {
+                apply(e);
+            }
+            while (processedTick < now) {
+                expire(++processedTick);
+            }
+
+            // 轮上有定时只睡到下一个非空刻度，远处的定时每圈至多唤醒一次，不再每毫秒空转；
+            // 先声明挂起再检查队列，与 submit 的先入队再检查 sleeping 配对，更早的定时到来不会漏掉唤醒
+            var wakeTick = size > 0 ? nextOccupiedTick() : -1;
+            sleeping = true;
+            if (requests.isEmpty() && !closed) {
+                if (wakeTick < 0) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, startTime + wakeTick * TICK_NANOS - System.nanoTime());
+                }
+            }
+            sleeping = false;
+        }
+    }
+
+    // 轮上的定时都晚于 processedTick，最多扫一圈
+    private long nextOccupiedTick() {
+        for (var tick = processedTick + 1; tick <= processedTick + WHEEL_SIZE; tick++) {
+            var sentinel = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+            if (sentinel.next != sentinel) {
+                return tick;
+            }
+        }
+        return processedTick + WHEEL_SIZE;
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startTime) / TICK_NANOS;
+    }
+
+    private void apply(Entry e) {
+        if (e.cancelled) {
+            if (e.next != null) {
+                e.unlink();
+                size--;
+            }
+            return;
+        }
+
+        if (e.next == null && !e.fired) {
+            // 向上取整到刻度，不早于触发时间，也不落在已走过的刻度上
+            var tick = (e.triggerTime - startTime + TICK_NANOS - 1) / TICK_NANOS;
+            e.deadline = Math.max(tick, processedTick + 1);
+            e.linkBefore(wheel[(int) (e.deadline & (WHEEL_SIZE - 1))]);
+            size++;
+        }
+    }
+
+    private void expire(long tick) {
+        var sentinel = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+        var e = sentinel.next;
+        while (e != sentinel) {
+            var next = e.next;
+            // 后面几圈才到期的留在原处
+            if (e.deadline <= tick) {
+                e.unlink();
+                size--;
+                fire(e);
+            }
+            e = next;
+        }
+    }
+
+    private void fire(Entry e) {
+        e.fired = true;
+        try {
+            e.tasklet.getActor().wake(e.tasklet);
+        } catch (RejectedExecutionException ex) {
+            // 执行器已关闭，未执行的定时随之丢弃
+            logger.fine("Timer " + e.tasklet + " dropped: " + ex);
+        }
+    }
+
+    // 每次 schedule 或 reset 对应一个 Entry，旧的 Entry 取消后不再复用；Entry 本身就是桶里的链表节点
+    static final class Entry {
+        final ScheduledTasklet tasklet;
+        final long triggerTime;
+        volatile boolean cancelled;
+        volatile boolean fired;
+        // 以下只由 ticker 线程读写
+        long deadline;
+        Entry next;
+        Entry prev;
+
+        Entry(ScheduledTasklet tasklet, long triggerTime) {
+            this.tasklet = tasklet;
+            this.triggerTime = triggerTime;
+            // 哨兵节点自成环
+            if (tasklet == null) {
+                next = this;
+                prev = this;
+            }
+        }
+
+        boolean isFired() {
+            return fired;
+        }
+
+        void linkBefore(Entry sentinel) {
+            next = sentinel;
+            prev = sentinel.prev;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        void unlink() {
+            next.prev = prev;
+            prev.next = next;
+            next = null;
+            prev = null;
+        }
+    }
+}
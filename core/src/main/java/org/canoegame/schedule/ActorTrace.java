@@ -0,0 +1,31 @@
+package org.canoegame.schedule;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// actor 生命周期事件的回调，在 actor 所在线程上同步调用，实现不应阻塞
+public interface ActorTrace {
+    void onRun(Actor actor);
+    void onIdle(Actor actor, boolean rescheduled);
+
+    // 未开启 FINE 级别时只有一次 isLoggable 判断，不拼接字符串
+    ActorTrace LOGGING = new ActorTrace() {
+        private final Logger logger = Logger.getLogger(Actor.class.getName());
+
+        @Override
+        public void onRun(Actor actor) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Actor " + actor.getName() + " is running");
+            }
+        }
+
+        @Override
+        public void onIdle(Actor actor, boolean rescheduled) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("Actor " + actor.getName() + " rescheduled: " + rescheduled
+                        + ", executionQueue: " + actor.getPendingCount()
+                        + ", scheduledQueue: " + actor.getScheduledCount());
+            }
+        }
+    };
+}
@@ -0,0 +1,200 @@
+package org.canoegame.schedule;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+// actor 的运行时：执行与定时分开，到期的任务只交给 workers 执行，不在定时线程上运行。
+// workStealing 使用 FIFO 模式的 ForkJoinPool，actor 在自己的线程上重新调度时进入该线程的本地队列，
+// 空闲线程再从别处窃取；blocking 与 virtualThreads 适合会阻塞在 I/O 上的 actor：blocking 按需增减平台线程，
+// virtualThreads 每次运行一个虚拟线程，需要 JDK 21，更早的 JDK 上退回 blocking
+public class Dispatcher extends AbstractExecutorService implements ScheduledExecutorService {
+    private final static Logger logger = Logger.getLogger(Dispatcher.class.getName());
+    private final ExecutorService workers;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private Dispatcher(String name, ExecutorService workers) {
+        this.workers = workers;
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            var t = new Thread(r, name + "-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public static Dispatcher workStealing(String name, int parallelism) {
+        return new Dispatcher(name, new ForkJoinPool(parallelism, pool -> {
+            var t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            t.setName(name + "-" + t.getPoolIndex());
+            return t;
+        }, null, true));
+    }
+
+    // 阻塞中的 actor 各占一个线程，空闲一分钟的线程退出
+    public static Dispatcher blocking(String name) {
+        var index = new AtomicInteger();
+        return new Dispatcher(name, Executors.newCachedThreadPool(r -> {
+            var t = new Thread(r, name + "-" + index.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }));
+    }
+
+    public static Dispatcher virtualThreads(String name) {
+        ExecutorService workers;
+        try {
+            workers = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads not supported by " + Runtime.version() + ", using blocking dispatcher");
+            return blocking(name);
+        }
+        return new Dispatcher(name, workers);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        workers.execute(command);
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return arm(new Task<Void>(command, null, triggerTime(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return arm(new Task<>(callable, triggerTime(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Illegal period " + period);
+        }
+        return arm(new Task<Void>(command, null, triggerTime(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Illegal delay " + delay);
+        }
+        return arm(new Task<Void>(command, null, triggerTime(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void shutdown() {
+        timer.shutdown();
+        workers.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        timer.shutdownNow();
+        return workers.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return workers.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return timer.isTerminated() && workers.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        var deadline = System.nanoTime() + unit.toNanos(timeout);
+        return timer.awaitTermination(timeout, unit)
+                && workers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return System.nanoTime() + unit.toNanos(Math.max(delay, 0));
+    }
+
+    private <V> Task<V> arm(Task<V> task) {
+        task.timer = timer.schedule(task::fire, task.time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        // 与 cancel 交错时，cancel 可能没看到刚装上的 timer
+        if (task.isCancelled()) {
+            task.timer.cancel(false);
+        }
+        return task;
+    }
+
+    // period 与 ScheduledThreadPoolExecutor 的约定相同：0 为一次性，正数为固定频率，负数为固定延迟；
+    // 周期任务在一次执行结束后才安排下一次，不会重叠
+    private final class Task<V> extends FutureTask<V> implements ScheduledFuture<V> {
+        private final long period;
+        private volatile long time;
+        private volatile ScheduledFuture<?> timer;
+
+        Task(Callable<V> callable, long time) {
+            super(callable);
+            this.time = time;
+            period = 0;
+        }
+
+        Task(Runnable runnable, V result, long time, long period) {
+            super(runnable, result);
+            this.time = time;
+            this.period = period;
+        }
+
+        private void fire() {
+            if (!isDone()) {
+                workers.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (period == 0) {
+                super.run();
+                return;
+            }
+
+            if (!runAndReset() || isShutdown()) {
+                return;
+            }
+
+            time = period > 0 ? time + period : System.nanoTime() - period;
+            arm(this);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            var cancelled = super.cancel(mayInterruptIfRunning);
+            var t = timer;
+            if (cancelled && t != null) {
+                t.cancel(false);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package org.canoegame.schedule;
 
-import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.TimeUnit;
 
-public class ScheduledTasklet extends Tasklet implements Comparable<ScheduledTasklet> {
+public class ScheduledTasklet extends Tasklet {
     private long triggerTime;
     private boolean cancelled;
+    // 当前挂在 ActorTimer 上的定时，只在所属 actor 上读写
+    private ActorTimer.Entry entry;
 
     ScheduledTasklet(String name, Runnable runnable, Actor actor, long delay, TimeUnit unit) {
         super(name, runnable, actor);
@@ -58,22 +59,26 @@ public class ScheduledTasklet extends Tasklet implements Comparable<ScheduledTas
     private void doReset(long delay, TimeUnit unit) {
         this.cancelled = false;
         this.assignTriggerTime(delay, unit);
-        getActor().reset(this);
+        getActor().arm(this);
     }
+
+    ActorTimer.Entry getEntry() {
+        return entry;
+    }
+
+    void setEntry(ActorTimer.Entry entry) {
+        this.entry = entry;
+    }
+
     @Override
     void run() {
-        if (cancelled) {
+        if (cancelled || !getActor().takeDue(this)) {
             return;
         }
 
         super.run();
     }
 
-    @Override
-    public int compareTo(@NotNull ScheduledTasklet o) {
-        return Long.compare(triggerTime, o.triggerTime);
-    }
-
     private void assignTriggerTime(long delay, TimeUnit unit) {
         var current = currentScheduledTasklet();
         if (current != null) {
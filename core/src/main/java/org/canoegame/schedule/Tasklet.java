@@ -1,44 +1,80 @@
 package org.canoegame.schedule;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 public class Tasklet {
     private static final ThreadLocal<Tasklet> current = new ThreadLocal<>();
 
+    private static final int INITIAL_STORAGE_SIZE = 4;
+    // TaskletLocal 的 id 不回收，数组只容纳最早创建的这几个，其余放入 overflow，数组不随 id 增长
+    private static final int MAX_STORAGE_SIZE = 16;
+
     private final Runnable runnable;
-    private final Map<TaskletLocal<?>, Object> storage;
     private final String name;
     private final Actor actor;
+    // 按 TaskletLocal 的 id 索引，多数 tasklet 用不到，第一次写入时才分配
+    private Object[] storage;
+    private Map<TaskletLocal<?>, Object> overflow;
 
     Tasklet(String name, Runnable runnable, Actor actor) {
-        if (name == null) {
-            name = runnable.getClass().getName();
-        }
         this.name = name;
         this.runnable = runnable;
         this.actor = actor;
-        storage = new HashMap<>();
     }
 
     public static Tasklet currentTasklet() {
         return current.get();
     }
 
+    // 未指定名字时用 runnable 的类名，到用时才取
     public String getName() {
-        return name;
+        return name != null ? name : runnable.getClass().getName();
     }
 
     <T> void localSet(TaskletLocal<T> local, T value) {
-        storage.put(local, value);
+        var id = local.getId();
+        if (id >= MAX_STORAGE_SIZE) {
+            if (overflow == null) {
+                overflow = new IdentityHashMap<>(INITIAL_STORAGE_SIZE);
+            }
+            overflow.put(local, value);
+            return;
+        }
+
+        if (storage == null) {
+            storage = new Object[Math.max(INITIAL_STORAGE_SIZE, id + 1)];
+        } else if (id >= storage.length) {
+            storage = Arrays.copyOf(storage, Math.min(Math.max(storage.length * 2, id + 1), MAX_STORAGE_SIZE));
+        }
+        storage[id] = value;
     }
 
     <T> T localGet(TaskletLocal<T> local) {
-        return (T)storage.get(local);
+        var id = local.getId();
+        if (id >= MAX_STORAGE_SIZE) {
+            return overflow == null ? null : (T) overflow.get(local);
+        }
+
+        if (storage == null || id >= storage.length) {
+            return null;
+        }
+        return (T)storage[id];
     }
 
     void localRemove(TaskletLocal<?> local) {
-        storage.remove(local);
+        var id = local.getId();
+        if (id >= MAX_STORAGE_SIZE) {
+            if (overflow != null) {
+                overflow.remove(local);
+            }
+            return;
+        }
+
+        if (storage != null && id < storage.length) {
+            storage[id] = null;
+        }
     }
 
     public Actor getActor() {
@@ -47,7 +83,7 @@ public class Tasklet {
 
     @Override
     public String toString() {
-        return name + "@" + getId();
+        return getName() + "@" + getId();
     }
 
     public int getId() {
@@ -60,7 +96,8 @@ public class Tasklet {
         try {
             runnable.run();
         } finally {
-            current.remove();
+            // 置空而不是 remove，线程上的 ThreadLocal 条目得以复用，每次运行不再分配
+            current.set(null);
         }
     }
 }
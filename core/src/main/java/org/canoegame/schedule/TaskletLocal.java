@@ -1,8 +1,13 @@
 package org.canoegame.schedule;
 
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 public class TaskletLocal<T> {
+    // 每个 TaskletLocal 在 tasklet 存储数组中的下标，不回收；超出数组容量的由 tasklet 另行存放
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final int id = nextId.getAndIncrement();
     private final Supplier<? extends T> supplier;
     public TaskletLocal(Supplier<? extends T> supplier) {
         this.supplier = supplier;
@@ -11,6 +16,10 @@ public class TaskletLocal<T> {
     public TaskletLocal() {
         this.supplier = null;
     }
+    int getId() {
+        return id;
+    }
+
     public T get() {
         var tasklet = Tasklet.currentTasklet();
         var v = tasklet.localGet(this);
@@ -0,0 +1,45 @@
+package org.canoegame.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+// 过期引擎的公共契约；实现均非线程安全，除 isAlive 外须由调用方加锁
+public interface ExpiryEngine<V> {
+    Node<V> add(V value);
+
+    // 以下两个方法只有支持按节点设置 ttl 的引擎（如 TimingWheel）才实现
+    default Node<V> add(V value, long ttl) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support per-node ttl");
+    }
+
+    default void setTtl(@NotNull Node<V> node, long ttl, long now) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support per-node ttl");
+    }
+
+    long getExpireTime(@NotNull Node<V> node);
+
+    void remove(@NotNull Node<V> node);
+
+    void touch(@NotNull Node<V> node);
+
+    void touch(@NotNull Node<V> node, long now);
+
+    // 不修改内部结构，可在锁外调用
+    boolean isAlive(@NotNull Node<V> node, long now);
+
+    void expire();
+
+    void expire(long now);
+
+    interface Node<V> {
+        V getValue();
+
+        boolean isExpired();
+    }
+
+    // TtlEngine::new、TimingWheel::new 均可直接作为 Factory
+    interface Factory {
+        <V> ExpiryEngine<V> create(long ttl, Consumer<V> expireHandler);
+    }
+}
@@ -0,0 +1,100 @@
+package org.canoegame.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 容量固定的 64 位指纹集合，每个元素只占 8 字节。布局与 cuckoo filter 相同：
+// 每个指纹有两个候选桶，每桶 4 个槽；两个桶都满时随机覆盖一个槽，即允许遗忘，不会扩容。
+// 指纹为 64 位，误判概率约为 元素数 / 2^64。contains 无锁，add/remove 须由调用方串行化
+public class FingerprintFilter {
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final long EMPTY = 0L;
+
+    private final AtomicLongArray slots;
+    private final int bucketMask;
+
+    public FingerprintFilter(int capacity) {
+        var buckets = Math.max(1, (capacity + SLOTS_PER_BUCKET - 1) / SLOTS_PER_BUCKET);
+        buckets = 1 << (32 - Integer.numberOfLeadingZeros(buckets - 1));
+        slots = new AtomicLongArray(buckets * SLOTS_PER_BUCKET);
+        bucketMask = buckets - 1;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    public boolean contains(long fingerprint) {
+        fingerprint = normalize(fingerprint);
+        return indexOf(bucket1(fingerprint), fingerprint) >= 0 || indexOf(bucket2(fingerprint), fingerprint) >= 0;
+    }
+
+    public void add(long fingerprint) {
+        fingerprint = normalize(fingerprint);
+        var b1 = bucket1(fingerprint);
+        var b2 = bucket2(fingerprint);
+        if (indexOf(b1, fingerprint) >= 0 || indexOf(b2, fingerprint) >= 0) {
+            return;
+        }
+
+        var slot = indexOf(b1, EMPTY);
+        if (slot < 0) {
+            slot = indexOf(b2, EMPTY);
+        }
+        if (slot < 0) {
+            // 两个桶都满，随机挤掉一个旧指纹
+            var random = ThreadLocalRandom.current().nextInt();
+            var bucket = (random & SLOTS_PER_BUCKET) == 0 ? b1 : b2;
+            slot = bucket * SLOTS_PER_BUCKET + (random & (SLOTS_PER_BUCKET - 1));
+        }
+
+        slots.set(slot, fingerprint);
+    }
+
+    public boolean remove(long fingerprint) {
+        fingerprint = normalize(fingerprint);
+        var slot = indexOf(bucket1(fingerprint), fingerprint);
+        if (slot < 0) {
+            slot = indexOf(bucket2(fingerprint), fingerprint);
+        }
+        if (slot < 0) {
+            return false;
+        }
+
+        slots.set(slot, EMPTY);
+        return true;
+    }
+
+    public int size() {
+        var size = 0;
+        for (var i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != EMPTY) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private int indexOf(int bucket, long value) {
+        var start = bucket * SLOTS_PER_BUCKET;
+        for (var i = start; i < start + SLOTS_PER_BUCKET; i++) {
+            if (slots.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int bucket1(long fingerprint) {
+        return (int) fingerprint & bucketMask;
+    }
+
+    private int bucket2(long fingerprint) {
+        return (int) ((fingerprint >>> 32) * 0x9E3779B9L >>> 16) & bucketMask;
+    }
+
+    // 0 表示空槽
+    private static long normalize(long fingerprint) {
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+}
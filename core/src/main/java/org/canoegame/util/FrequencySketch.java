@@ -0,0 +1,89 @@
+package org.canoegame.util;
+
+// 4-bit 计数的 Count-Min Sketch，用于估算近期访问频率；
+// 累计增量达到采样上限时所有计数减半，使旧的热度逐渐衰减。非线程安全
+public class FrequencySketch {
+    private static final long[] SEED = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+
+    private long[] table;
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    public FrequencySketch(int expectedSize) {
+        ensureCapacity(expectedSize);
+    }
+
+    // 容量不足时重建，已有的统计会丢失
+    public void ensureCapacity(int expectedSize) {
+        var capacity = Math.min(Math.max(expectedSize, 16), MAX_TABLE_SIZE);
+        if (table != null && table.length >= capacity) {
+            return;
+        }
+
+        table = new long[1 << (32 - Integer.numberOfLeadingZeros(capacity - 1))];
+        tableMask = table.length - 1;
+        sampleSize = 10 * capacity;
+        size = 0;
+    }
+
+    public int frequency(int hash) {
+        hash = spread(hash);
+        var start = (hash & 3) << 2;
+        var frequency = Integer.MAX_VALUE;
+        for (var i = 0; i < 4; i++) {
+            var index = indexOf(hash, i);
+            var count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    public void increment(int hash) {
+        hash = spread(hash);
+        var start = (hash & 3) << 2;
+        var added = false;
+        for (var i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int i, int j) {
+        var offset = j << 2;
+        var mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        var count = 0;
+        for (var i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    private int indexOf(int item, int i) {
+        var hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,110 @@
+package org.canoegame.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// 多生产者、单消费者的无界队列，由定长数组块串成链表：入队只有一次 getAndIncrement 和一次写槽位，
+// 不为每个元素分配节点；poll 只能由一个线程调用，由调用方保证（通常是正在运行的 actor）
+public class MpscQueue<E> {
+    private final int chunkSize;
+    // 生产者与消费者的下标各占一条缓存行，避免入队与出队相互失效
+    private final PaddedLong producerIndex = new PaddedLong();
+    private final PaddedLong consumerIndex = new PaddedLong();
+    // 最近被使用的块，只是查找的起点，不保证是最新的块
+    private volatile Chunk<E> producerChunk;
+    private volatile Chunk<E> consumerChunk;
+
+    public MpscQueue(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Illegal chunk size " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+        var first = new Chunk<E>(0, chunkSize);
+        producerChunk = first;
+        consumerChunk = first;
+    }
+
+    public void offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        var index = producerIndex.getAndIncrement();
+        var chunk = producerChunk;
+        // 别的生产者已把起点推到后面的块，下标所在的块还没被消费完，从消费者所在的块往后找
+        if (chunk.base > index) {
+            chunk = consumerChunk;
+        }
+
+        while (chunk.base + chunkSize <= index) {
+            chunk = chunk.next(chunkSize);
+        }
+
+        if (chunk.base == index) {
+            producerChunk = chunk;
+        }
+        chunk.slots.lazySet((int) (index - chunk.base), e);
+    }
+
+    // 队列为空或队首的生产者已占位但尚未写入时返回 null，此时 isEmpty 仍为 false
+    public E poll() {
+        var index = consumerIndex.get();
+        var chunk = consumerChunk;
+        var offset = (int) (index - chunk.base);
+        if (offset == chunkSize) {
+            var next = chunk.next.get();
+            if (next == null) {
+                return null;
+            }
+
+            consumerChunk = chunk = next;
+            offset = 0;
+        }
+
+        var e = chunk.slots.get(offset);
+        if (e == null) {
+            return null;
+        }
+
+        chunk.slots.lazySet(offset, null);
+        consumerIndex.lazySet(index + 1);
+        return e;
+    }
+
+    // 只比较两个下标，已占位未写入的元素也算在内
+    public boolean isEmpty() {
+        return producerIndex.get() == consumerIndex.get();
+    }
+
+    public int size() {
+        return (int) Math.max(0, producerIndex.get() - consumerIndex.get());
+    }
+
+    private static final class Chunk<E> {
+        final long base;
+        final AtomicReferenceArray<E> slots;
+        final AtomicReference<Chunk<E>> next = new AtomicReference<>();
+
+        Chunk(long base, int size) {
+            this.base = base;
+            slots = new AtomicReferenceArray<>(size);
+        }
+
+        // 多个生产者同时越过块尾时只有一个新块能接上
+        Chunk<E> next(int size) {
+            var n = next.get();
+            if (n != null) {
+                return n;
+            }
+
+            n = new Chunk<>(base + size, size);
+            return next.compareAndSet(null, n) ? n : next.get();
+        }
+    }
+
+    private static final class PaddedLong extends AtomicLong {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
@@ -0,0 +1,135 @@
+package org.canoegame.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// 在堆外 direct ByteBuffer 上存放字节串。空间按 slab 申请，slab 内按 2 的幂次大小分块，
+// 释放的块挂到对应大小的空闲链上复用；slab 一经申请不再归还。
+// 句柄高 32 位为 slab 下标，低 32 位为块偏移，块头 4 字节记录长度。线程安全
+public class OffHeapStore {
+    public static final long NONE = -1L;
+
+    private static final int HEADER = Integer.BYTES;
+    private static final int MIN_SHIFT = 6;
+
+    private final int slabSize;
+    private final int maxSlabs;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    // 每个大小等级的空闲块句柄
+    private final long[][] freeLists;
+    private final int[] freeCounts;
+    private int position;
+    private long usedBytes;
+
+    // capacity 为堆外内存总上限，slabSize 须为 2 的幂，且限制了单个字节串的最大长度
+    public OffHeapStore(long capacity, int slabSize) {
+        if (Integer.bitCount(slabSize) != 1 || slabSize < (1 << MIN_SHIFT)) {
+            throw new IllegalArgumentException("slabSize must be a power of two >= " + (1 << MIN_SHIFT));
+        }
+
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, capacity / slabSize));
+        var classes = Integer.numberOfTrailingZeros(slabSize) - MIN_SHIFT + 1;
+        freeLists = new long[classes][];
+        freeCounts = new int[classes];
+        for (var i = 0; i < classes; i++) {
+            freeLists[i] = new long[8];
+        }
+        position = slabSize;
+    }
+
+    // 空间不足或超过单块上限时返回 NONE
+    public synchronized long put(byte[] bytes) {
+        var sizeClass = sizeClass(bytes.length + HEADER);
+        if (sizeClass < 0) {
+            return NONE;
+        }
+
+        var handle = allocate(sizeClass);
+        if (handle == NONE) {
+            return NONE;
+        }
+
+        var slab = slabs.get(slab(handle));
+        var offset = offset(handle);
+        slab.putInt(offset, bytes.length);
+        slab.put(offset + HEADER, bytes);
+        usedBytes += chunkSize(sizeClass);
+        return handle;
+    }
+
+    public synchronized byte[] get(long handle) {
+        var slab = slabs.get(slab(handle));
+        var offset = offset(handle);
+        var bytes = new byte[slab.getInt(offset)];
+        slab.get(offset + HEADER, bytes);
+        return bytes;
+    }
+
+    public synchronized void free(long handle) {
+        var slab = slabs.get(slab(handle));
+        var sizeClass = sizeClass(slab.getInt(offset(handle)) + HEADER);
+        var count = freeCounts[sizeClass];
+        if (count == freeLists[sizeClass].length) {
+            freeLists[sizeClass] = Arrays.copyOf(freeLists[sizeClass], count << 1);
+        }
+        freeLists[sizeClass][count] = handle;
+        freeCounts[sizeClass] = count + 1;
+        usedBytes -= chunkSize(sizeClass);
+    }
+
+    // 已分配给存活字节串的块大小之和
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getReservedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    private long allocate(int sizeClass) {
+        var count = freeCounts[sizeClass];
+        if (count > 0) {
+            freeCounts[sizeClass] = count - 1;
+            return freeLists[sizeClass][count - 1];
+        }
+
+        var size = chunkSize(sizeClass);
+        if (position + size > slabSize) {
+            if (slabs.size() == maxSlabs) {
+                return NONE;
+            }
+
+            // 旧 slab 的剩余空间不再使用
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            position = 0;
+        }
+
+        var handle = ((long) (slabs.size() - 1) << 32) | position;
+        position += size;
+        return handle;
+    }
+
+    private int sizeClass(int size) {
+        if (size > slabSize) {
+            return -1;
+        }
+
+        var shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+        return shift - MIN_SHIFT;
+    }
+
+    private static int chunkSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_SHIFT);
+    }
+
+    private static int slab(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+}
@@ -0,0 +1,59 @@
+package org.canoegame.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// 多生产者、单消费者的有损环形缓冲区：生产者从不阻塞，已满或竞争失败时直接丢弃；
+// 消费者由调用方保证互斥（通常在写锁内）
+public class ReadBuffer<E> {
+    private final AtomicReferenceArray<E> buffer;
+    private final int mask;
+    private final AtomicLong writeCounter;
+    private volatile long readCounter;
+
+    public ReadBuffer(int capacity) {
+        var size = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(capacity, 2) - 1));
+        buffer = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+        writeCounter = new AtomicLong();
+    }
+
+    // 返回 false 表示元素被丢弃，调用方可借此触发一次 drain
+    public boolean offer(E e) {
+        var tail = writeCounter.get();
+        if (tail - readCounter >= buffer.length()) {
+            return false;
+        }
+
+        if (!writeCounter.compareAndSet(tail, tail + 1)) {
+            return false;
+        }
+
+        buffer.lazySet((int) (tail & mask), e);
+        return true;
+    }
+
+    public void drainTo(Consumer<? super E> consumer) {
+        var head = readCounter;
+        var tail = writeCounter.get();
+        while (head < tail) {
+            var index = (int) (head & mask);
+            var e = buffer.get(index);
+            // 生产者已占位但尚未写入
+            if (e == null) {
+                break;
+            }
+
+            buffer.lazySet(index, null);
+            consumer.accept(e);
+            head++;
+        }
+
+        readCounter = head;
+    }
+
+    public int size() {
+        return (int) (writeCounter.get() - readCounter);
+    }
+}
@@ -0,0 +1,54 @@
+package org.canoegame.util;
+
+import java.util.function.Consumer;
+
+// 按线程分散到多个 ReadBuffer，降低生产者之间在 writeCounter 上的竞争；
+// 与 ReadBuffer 一样有损，drain 由调用方保证互斥
+public class StripedReadBuffer<E> {
+    private static final int MAX_STRIPES = 32;
+    private static final int STRIPE_SIZE = 32;
+    public static final int DEFAULT_STRIPES = Math.min(MAX_STRIPES,
+            1 << (32 - Integer.numberOfLeadingZeros(Runtime.getRuntime().availableProcessors() - 1)));
+
+    private final ReadBuffer<E>[] stripes;
+    private final int mask;
+
+    public StripedReadBuffer() {
+        this(DEFAULT_STRIPES, STRIPE_SIZE);
+    }
+
+    public StripedReadBuffer(int stripeCount, int stripeSize) {
+        var count = 1 << (32 - Integer.numberOfLeadingZeros(Math.max(stripeCount, 1) - 1));
+        stripes = new ReadBuffer[count];
+        for (var i = 0; i < count; i++) {
+            stripes[i] = new ReadBuffer<>(stripeSize);
+        }
+        mask = count - 1;
+    }
+
+    public boolean offer(E e) {
+        return stripes[probe() & mask].offer(e);
+    }
+
+    public void drainTo(Consumer<? super E> consumer) {
+        for (var stripe : stripes) {
+            stripe.drainTo(consumer);
+        }
+    }
+
+    public int size() {
+        var size = 0;
+        for (var stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static int probe() {
+        var h = Thread.currentThread().getId();
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
@@ -0,0 +1,223 @@
+package org.canoegame.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+// 分层时间轮：每个节点可以有自己的 ttl，add/touch/remove 均为 O(1)；
+// expire 只处理时钟推进所跨过的桶，未到期的节点被重新挂到更精细的层级上
+public class TimingWheel<V> implements ExpiryEngine<V> {
+    static final int[] BUCKETS = {64, 64, 64, 32, 1};
+    static final long[] SPANS = {
+            1L << 6,  // 64ms
+            1L << 12, // 4.1s
+            1L << 18, // 4.4m
+            1L << 24, // 4.7h
+            1L << 29, // 6.2d
+            1L << 29,
+    };
+    static final int[] SHIFT = {
+            Long.numberOfTrailingZeros(SPANS[0]),
+            Long.numberOfTrailingZeros(SPANS[1]),
+            Long.numberOfTrailingZeros(SPANS[2]),
+            Long.numberOfTrailingZeros(SPANS[3]),
+            Long.numberOfTrailingZeros(SPANS[4]),
+    };
+
+    private final long ttl;
+    private final Consumer<V> expireHandler;
+    private final Node<V>[][] wheel;
+    private long time;
+
+    public TimingWheel(long ttl, Consumer<V> expireHandler) {
+        this.ttl = ttl;
+        this.expireHandler = expireHandler;
+        this.time = System.currentTimeMillis();
+
+        wheel = new Node[BUCKETS.length][];
+        for (var i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (var j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = new Node<>(null, null, 0);
+            }
+        }
+    }
+
+    public Node<V> add(V value) {
+        return add(value, ttl);
+    }
+
+    public Node<V> add(V value, long ttl) {
+        var node = new Node<>(this, value, ttl);
+        node.expireTime = deadline(System.currentTimeMillis(), ttl);
+        schedule(node);
+        return node;
+    }
+
+    public void remove(@NotNull ExpiryEngine.Node<V> n) {
+        if (!(n instanceof Node<V> node) || node.wheel != this) {
+            return;
+        }
+
+        unlink(node);
+        node.wheel = null;
+    }
+
+    public void touch(@NotNull ExpiryEngine.Node<V> node) {
+        touch(node, System.currentTimeMillis());
+    }
+
+    public void touch(@NotNull ExpiryEngine.Node<V> n, long now) {
+        if (!(n instanceof Node<V> node) || node.wheel != this) {
+            return;
+        }
+
+        reschedule(node, deadline(now, node.ttl));
+    }
+
+    // 修改节点自身的 ttl，从 now 起重新计时
+    public void setTtl(@NotNull ExpiryEngine.Node<V> n, long ttl, long now) {
+        if (!(n instanceof Node<V> node) || node.wheel != this) {
+            return;
+        }
+
+        node.ttl = ttl;
+        reschedule(node, deadline(now, ttl));
+    }
+
+    public long getExpireTime(@NotNull ExpiryEngine.Node<V> n) {
+        return ((Node<V>) n).expireTime;
+    }
+
+    public boolean isAlive(@NotNull ExpiryEngine.Node<V> n, long now) {
+        return n instanceof Node<V> node && node.wheel == this && now < node.expireTime;
+    }
+
+    public void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    public void expire(long now) {
+        var previous = time;
+        if (now <= previous) {
+            return;
+        }
+
+        time = now;
+        for (var i = 0; i < SHIFT.length; i++) {
+            var previousTicks = previous >>> SHIFT[i];
+            var currentTicks = now >>> SHIFT[i];
+            var delta = currentTicks - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+
+            expire(i, previousTicks, delta);
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta) {
+        var buckets = wheel[level];
+        var mask = buckets.length - 1;
+        var steps = (int) Math.min(1 + delta, buckets.length);
+        var start = (int) (previousTicks & mask);
+        for (var i = start; i < start + steps; i++) {
+            var sentinel = buckets[i & mask];
+            var node = sentinel.next;
+            sentinel.next = sentinel;
+            sentinel.prev = sentinel;
+
+            while (node != sentinel) {
+                var next = node.next;
+                node.next = null;
+                node.prev = null;
+
+                if (node.expireTime - time > 0) {
+                    schedule(node);
+                } else {
+                    node.wheel = null;
+                    if (expireHandler != null) {
+                        expireHandler.accept(node.value);
+                    }
+                }
+
+                node = next;
+            }
+        }
+    }
+
+    // 溢出时视为永不过期
+    private static long deadline(long now, long ttl) {
+        var t = now + ttl;
+        return ((now ^ t) & (ttl ^ t)) < 0 ? Long.MAX_VALUE : t;
+    }
+
+    private void reschedule(Node<V> node, long expireTime) {
+        node.expireTime = expireTime;
+        unlink(node);
+        schedule(node);
+    }
+
+    private void schedule(Node<V> node) {
+        var sentinel = findBucket(node.expireTime);
+        node.next = sentinel;
+        node.prev = sentinel.prev;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    private void unlink(Node<V> node) {
+        if (node.next != null) {
+            node.next.prev = node.prev;
+            node.prev.next = node.next;
+            node.next = null;
+            node.prev = null;
+        }
+    }
+
+    private Node<V> findBucket(long expireTime) {
+        var duration = expireTime - time;
+        var last = wheel.length - 1;
+        for (var i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                var ticks = expireTime >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+            }
+        }
+
+        return wheel[last][0];
+    }
+
+    public static class Node<V> implements ExpiryEngine.Node<V> {
+        private final V value;
+        private long ttl;
+        private volatile long expireTime;
+        Node<V> next;
+        Node<V> prev;
+
+        TimingWheel<V> wheel;
+
+        private Node(TimingWheel<V> wheel, V value, long ttl) {
+            this.wheel = wheel;
+            this.value = value;
+            this.ttl = ttl;
+            // 哨兵节点自成环
+            if (wheel == null) {
+                next = this;
+                prev = this;
+            }
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getExpireTime() {
+            return expireTime;
+        }
+
+        public boolean isExpired() {
+            return wheel == null;
+        }
+    }
+}
@@ -4,7 +4,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.function.Consumer;
 
-public class TtlEngine<V> {
+// 固定 ttl 的 LRU 环，按访问时间排序，expire 从尾部淘汰
+public class TtlEngine<V> implements ExpiryEngine<V> {
     private final long ttl;
     private Node<V> head;
     private final Consumer<V> expireHandler;
@@ -20,8 +21,8 @@ public class TtlEngine<V> {
         return node;
     }
 
-    public void remove(@NotNull Node<V> node) {
-        if (node.list != this) {
+    public void remove(@NotNull ExpiryEngine.Node<V> n) {
+        if (!(n instanceof Node<V> node) || node.list != this) {
             return;
         }
 
@@ -40,12 +41,17 @@ public class TtlEngine<V> {
         node.prev.next = node.next;
     }
 
-    public void touch(@NotNull Node<V> node) {
-        if (node.list != this) {
+    public void touch(@NotNull ExpiryEngine.Node<V> node) {
+        touch(node, System.currentTimeMillis());
+    }
+
+    // 批量回放访问记录时由调用方统一取一次时间
+    public void touch(@NotNull ExpiryEngine.Node<V> n, long now) {
+        if (!(n instanceof Node<V> node) || node.list != this) {
             return;
         }
 
-        node.accessTime = System.currentTimeMillis();;
+        node.accessTime = now;
         this.moveNodeToHead(node);
     }
 
@@ -75,14 +81,26 @@ public class TtlEngine<V> {
         head = node;
     }
 
+    public long getExpireTime(@NotNull ExpiryEngine.Node<V> n) {
+        return ((Node<V>) n).accessTime + ttl;
+    }
+
+    // 不修改链表，可在锁外调用
+    public boolean isAlive(@NotNull ExpiryEngine.Node<V> n, long now) {
+        return n instanceof Node<V> node && node.list == this && now - node.accessTime < ttl;
+    }
+
     public void expire() {
+        expire(System.currentTimeMillis());
+    }
+
+    public void expire(long now) {
         if (head == null) {
             return;
         }
 
         var tail = head.prev;
-        var now = System.currentTimeMillis();
-        while (tail != null && now - tail.accessTime > ttl) {
+        while (tail != null && now - tail.accessTime >= ttl) {
             tail.list = null;
             if (expireHandler != null) {
                 expireHandler.accept(tail.value);
@@ -102,9 +120,9 @@ public class TtlEngine<V> {
         }
     }
 
-    public static class Node<V> {
+    public static class Node<V> implements ExpiryEngine.Node<V> {
         private final V value;
-        private long accessTime;
+        private volatile long accessTime;
         Node<V> next;
         Node<V> prev;
 
@@ -0,0 +1,279 @@
+package org.canoegame.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+// W-TinyLFU 按权重淘汰：新条目先进入约占 1% 的窗口 LRU，溢出后作为候选进入主区的试用段；
+// 主区超限时用 FrequencySketch 比较候选与试用段中最久未用条目的频率，淘汰频率低的一方，
+// 试用段中再次被访问的条目晋升到保护段。一次性扫描因此很难挤掉热点条目。非线程安全
+public class WTinyLfu<V> {
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    // 候选频率不高于此值时不做随机准入，防止哈希碰撞攻击利用准入
+    private static final int ADMIT_RANDOM_THRESHOLD = 5;
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Consumer<V> evictionHandler;
+    private final FrequencySketch sketch;
+    private final Queue<V>[] queues;
+
+    private long weightedSize;
+    private long windowWeight;
+    private long protectedWeight;
+    private int size;
+
+    public WTinyLfu(long maximum, Consumer<V> evictionHandler) {
+        this.maximum = maximum;
+        this.evictionHandler = evictionHandler;
+        windowMaximum = (long) (maximum * WINDOW_RATIO);
+        protectedMaximum = (long) ((maximum - windowMaximum) * PROTECTED_RATIO);
+        sketch = new FrequencySketch((int) Math.min(maximum, 1024));
+        queues = new Queue[]{new Queue<>(), new Queue<>(), new Queue<>()};
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public long getWeightedSize() {
+        return weightedSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Node<V> add(V value, int hash, int weight) {
+        var node = new Node<>(this, value, hash, weight);
+        sketch.ensureCapacity(++size);
+        sketch.increment(hash);
+        link(node, WINDOW);
+        evict();
+        return node;
+    }
+
+    public void touch(Node<V> node) {
+        if (node == null || node.policy != this) {
+            return;
+        }
+
+        sketch.increment(node.hash);
+        if (node.queue == PROBATION) {
+            unlink(node);
+            link(node, PROTECTED);
+            demote();
+        } else {
+            queues[node.queue].moveToLast(node);
+        }
+    }
+
+    public void update(Node<V> node, int weight) {
+        if (node == null || node.policy != this) {
+            return;
+        }
+
+        if (weight > maximum) {
+            // 单个条目超出上限，直接淘汰，不牵连其他条目
+            evictNode(node);
+            return;
+        }
+
+        unlink(node);
+        node.weight = weight;
+        link(node, node.queue);
+        if (node.queue == PROTECTED) {
+            demote();
+        }
+        evict();
+    }
+
+    public void remove(Node<V> node) {
+        if (node == null || node.policy != this) {
+            return;
+        }
+
+        unlink(node);
+        node.policy = null;
+        size--;
+    }
+
+    private void demote() {
+        while (protectedWeight > protectedMaximum) {
+            var node = queues[PROTECTED].first;
+            if (node == null) {
+                return;
+            }
+
+            unlink(node);
+            link(node, PROBATION);
+        }
+    }
+
+    private void evict() {
+        Node<V> candidate = null;
+        while (windowWeight > windowMaximum) {
+            var node = queues[WINDOW].first;
+            if (node == null) {
+                break;
+            }
+
+            unlink(node);
+            link(node, PROBATION);
+            if (candidate == null) {
+                candidate = node;
+            }
+        }
+
+        var victim = queues[PROBATION].first;
+        while (weightedSize > maximum) {
+            if (victim == null && candidate == null) {
+                // 试用段已空，依次从保护段、窗口中淘汰
+                var node = queues[PROTECTED].first;
+                if (node == null) {
+                    node = queues[WINDOW].first;
+                }
+                if (node == null) {
+                    return;
+                }
+
+                evictNode(node);
+                continue;
+            }
+
+            if (candidate == null || victim == candidate) {
+                var next = victim.next;
+                evictNode(victim);
+                if (victim == candidate) {
+                    candidate = next;
+                }
+                victim = next;
+            } else if (victim == null || candidate.weight > maximum || !admit(candidate.hash, victim.hash)) {
+                var next = candidate.next;
+                evictNode(candidate);
+                candidate = next;
+            } else {
+                var next = victim.next;
+                evictNode(victim);
+                victim = next;
+            }
+        }
+    }
+
+    private boolean admit(int candidateHash, int victimHash) {
+        var victimFrequency = sketch.frequency(victimHash);
+        var candidateFrequency = sketch.frequency(candidateHash);
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+
+        if (candidateFrequency <= ADMIT_RANDOM_THRESHOLD) {
+            return false;
+        }
+
+        return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+    }
+
+    private void evictNode(Node<V> node) {
+        remove(node);
+        if (evictionHandler != null) {
+            evictionHandler.accept(node.value);
+        }
+    }
+
+    private void link(Node<V> node, int queue) {
+        node.queue = queue;
+        queues[queue].addLast(node);
+        weightedSize += node.weight;
+        if (queue == WINDOW) {
+            windowWeight += node.weight;
+        } else if (queue == PROTECTED) {
+            protectedWeight += node.weight;
+        }
+    }
+
+    private void unlink(Node<V> node) {
+        queues[node.queue].remove(node);
+        weightedSize -= node.weight;
+        if (node.queue == WINDOW) {
+            windowWeight -= node.weight;
+        } else if (node.queue == PROTECTED) {
+            protectedWeight -= node.weight;
+        }
+    }
+
+    public static class Node<V> {
+        private final V value;
+        private final int hash;
+        private int weight;
+        private int queue;
+        private Node<V> prev;
+        private Node<V> next;
+
+        private WTinyLfu<V> policy;
+
+        private Node(WTinyLfu<V> policy, V value, int hash, int weight) {
+            this.policy = policy;
+            this.value = value;
+            this.hash = hash;
+            this.weight = weight;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public boolean isEvicted() {
+            return policy == null;
+        }
+    }
+
+    private static class Queue<V> {
+        private Node<V> first;
+        private Node<V> last;
+
+        void addLast(Node<V> node) {
+            node.prev = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        void remove(Node<V> node) {
+            if (node.prev == null) {
+                first = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+
+            if (node.next == null) {
+                last = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node<V> node) {
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.canoegame.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 读多写少场景下 Group.get 命中路径的吞吐，main 依次以 1~64 线程运行
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheBenchmark {
+    private static final int SIZE = 1 << 14;
+    private static final int MASK = SIZE - 1;
+
+    @Param({"false", "true"})
+    public boolean expiring;
+
+    private Cache.Group<CacheTest.MockEntity> group;
+    private Key<CacheTest.MockEntity>[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Setup
+    public void setUp() {
+        group = new Cache.Group<>(TimeUnit.MINUTES.toMillis(30));
+        keys = new Key[SIZE];
+        for (var i = 0; i < SIZE; i++) {
+            var e = new CacheTest.MockEntity(i & 1023, i);
+            keys[i] = e.getKey();
+            group.putOnStore(keys[i], e, expiring);
+        }
+    }
+
+    @Benchmark
+    public EntityHolder<CacheTest.MockEntity> get(Cursor cursor) {
+        return group.get(keys[cursor.index++ & MASK], false);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (var threads = 1; threads <= 64; threads <<= 1) {
+            new Runner(new OptionsBuilder()
+                    .include(CacheBenchmark.class.getSimpleName() + ".get$")
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
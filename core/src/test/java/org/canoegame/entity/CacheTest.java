@@ -1,8 +1,12 @@
 package org.canoegame.entity;
 
 import junit.framework.TestCase;
+import org.canoegame.util.TimingWheel;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 public class CacheTest extends TestCase {
@@ -95,10 +99,21 @@ public class CacheTest extends TestCase {
                         return key1;
                     }
 
+                    @Override
+                    public boolean determinesGroup() {
+                        return significant > 0;
+                    }
+
                     public int hashCode() {
                         return key1 * 31 + key2;
                     }
 
+                    @Override
+                    public long fingerprint() {
+                        var h = (((long) key1 << 32) | (key2 & 0xffffffffL)) * 0x9E3779B97F4A7C15L;
+                        return h ^ significant;
+                    }
+
                     public boolean equals(Object o) {
                         if (!(o instanceof Key k)) {
                             return false;
@@ -148,7 +163,8 @@ public class CacheTest extends TestCase {
         }
 
         protected Commitment createCommitment(FieldSet<Field> changes) {
-            return null;
+            return DeltaCommitment.of(MockEntity.class, getKey(), Commitment.Kind.of(getLifecycle()), changes,
+                    (out, f) -> out.writeInt32(f.getNumber(), field1));
         }
 
         @Override
@@ -182,6 +198,184 @@ public class CacheTest extends TestCase {
         assertSame(holder, holder3);
     }
 
+    public void testNegativeFilter() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), false);
+        cache.enableNegativeFilter(1024);
+        cache.putPrefix(MockEntity.prefix(1));
+
+        // 前缀完整时不存在的 key 被记录下来，但不占用 null holder
+        var absent = cache.get(MockEntity.key(1, 2));
+        assertNull(absent.get());
+        assertTrue(cache.getAll(MockEntity.prefix(1)).isEmpty());
+
+        // 已删除的 key 在前缀之外也能直接回答
+        cache.putOnDelete(new MockEntity(2, 1));
+        assertNotNull(cache.get(MockEntity.key(2, 1)));
+        assertNull(cache.get(MockEntity.key(2, 1)).get());
+        assertNull(cache.get(MockEntity.key(2, 2)));
+
+        var e = new MockEntity(1, 2);
+        cache.putOnStore(e, true);
+        assertSame(e, cache.get(MockEntity.key(1, 2)).get());
+        var e2 = new MockEntity(2, 1);
+        cache.putOnFetch(e2, true);
+        assertSame(e2, cache.get(MockEntity.key(2, 1)).get());
+    }
+
+    public void testNegativeFilterCollision() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false, 1);
+        cache.enableNegativeFilter(1024);
+        assertEquals(MockEntity.key(1, 0).hashCode(), MockEntity.key(0, 31).hashCode());
+
+        // hashCode 相同的 key 不会被当作不存在，未缓存时照常去加载
+        cache.putNullIfAbsent(MockEntity.key(1, 0));
+        assertNull(cache.get(MockEntity.key(1, 0)).get());
+        assertNull(cache.get(MockEntity.key(0, 31)));
+
+        var e = new MockEntity(0, 31);
+        cache.putOnFetch(e, true);
+        assertSame(e, cache.get(MockEntity.key(0, 31)).get());
+    }
+
+    public void testNegativeFilterExpire() throws InterruptedException {
+        var cache = new Cache<>(MockEntity.class, 100, false);
+        cache.enableNegativeFilter(1024);
+
+        cache.putOnDelete(new MockEntity(2, 1));
+        assertNull(cache.get(MockEntity.key(2, 1)).get());
+
+        // 与 null holder 一样，不存在的记录过了 ttl 就不再作数
+        Thread.sleep(150);
+        assertNull(cache.get(MockEntity.key(2, 1)));
+    }
+
+    private static EntityCodec<MockEntity> codec() {
+        return new EntityCodec<>() {
+            public byte[] encode(MockEntity value) {
+                return ByteBuffer.allocate(12).putInt(value.getKey1()).putInt(value.getKey2())
+                        .putInt(value.field1).array();
+            }
+
+            public MockEntity decode(org.canoegame.entity.Key<MockEntity> key, byte[] bytes) {
+                var buf = ByteBuffer.wrap(bytes);
+                var e = new MockEntity(buf.getInt(), buf.getInt());
+                e.field1 = buf.getInt();
+                return e;
+            }
+        };
+    }
+
+    public void testOffHeapTier() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false);
+        cache.enableOffHeapTier(codec(), 1 << 20);
+
+        var e1 = new MockEntity(1, 1);
+        e1.field1 = 11;
+        var e2 = new MockEntity(1, 2);
+        e2.field1 = 12;
+        var h1 = cache.putOnStore(e1, false);
+        var h2 = cache.putOnStore(e2, true);
+
+        // 第一轮只清除访问标记，第二轮才降级
+        cache.cleanUp();
+        assertSame(e2, h2.get());
+        cache.cleanUp();
+        cache.cleanUp();
+
+        var inflated = h1.get();
+        assertNotSame(e1, inflated);
+        assertEquals(1, inflated.getKey2());
+        assertEquals(11, inflated.field1);
+        assertSame(inflated, cache.get(MockEntity.key(1, 1)).get());
+        assertEquals(12, cache.get(MockEntity.key(1, 2)).get().field1);
+    }
+
+    public void testOffHeapTierMaintenance() {
+        var cache = new Cache<>(MockEntity.class, Expiry.<MockEntity>afterAccess(TimeUnit.MINUTES.toMillis(1)),
+                TimeUnit.MINUTES.toMillis(1), false, 1, 100, Weigher.singleton());
+        cache.enableOffHeapTier(codec(), 1 << 20);
+        var e = new MockEntity(1, 1);
+        e.field1 = 11;
+        var h = cache.putOnStore(e, true);
+        cache.cleanUp();
+        cache.cleanUp();
+        assertNull(h.peek());
+
+        // 回放锁外命中与权重、存活时间的计算都不读取值，已降级的条目保持在堆外
+        assertSame(h, cache.get(MockEntity.key(1, 1)));
+        cache.cleanUp();
+        assertNull(h.peek());
+        assertTrue(h.hasValue());
+        assertEquals(11, h.get().field1);
+    }
+
+    public void testStats() throws InterruptedException {
+        var cache = new Cache<>(MockEntity.class, 200, false, 2, 1, Weigher.singleton());
+        cache.enableStats();
+        cache.putPrefix(MockEntity.prefix(1));
+        cache.putOnStore(new MockEntity(1, 1), false);
+        cache.putOnStore(new MockEntity(1, 2), true);
+
+        cache.get(MockEntity.key(1, 1));
+        cache.get(MockEntity.key(1, 2));
+        cache.get(MockEntity.key(2, 1));
+        var stats = cache.stats();
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(2, stats.prefixHitCount());
+        assertEquals(1, stats.prefixMissCount());
+        assertEquals(1, stats.lockFallbackCount());
+        assertEquals(2, stats.size());
+
+        // 容量为 1，再放入一个 expiring 条目会淘汰一个
+        cache.putOnStore(new MockEntity(1, 3), true);
+        assertEquals(1, cache.stats().evictionCount());
+
+        Thread.sleep(250);
+        cache.cleanUp();
+        stats = cache.stats();
+        assertEquals(1, stats.expirationCount());
+        assertEquals(1, stats.size());
+
+        var reports = new ArrayList<CacheStats>();
+        var executor = new ScheduledThreadPoolExecutor(1);
+        try {
+            cache.scheduleReport(executor, (name, s) -> {
+                assertEquals("MockEntity", name);
+                synchronized (reports) {
+                    reports.add(s);
+                }
+            }, 20, TimeUnit.MILLISECONDS);
+            cache.get(MockEntity.key(1, 1));
+            Thread.sleep(100);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        synchronized (reports) {
+            var hits = 0L;
+            for (var report : reports) {
+                hits += report.hitCount();
+            }
+            assertEquals(1, hits);
+        }
+    }
+
+    public void testConcurrencyLevel() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), true, 48);
+        assertEquals(64, cache.getConcurrencyLevel());
+
+        cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), true, 1);
+        assertEquals(1, cache.getConcurrencyLevel());
+
+        for (var i = 0; i < 100; i++) {
+            cache.putOnStore(new MockEntity(i, i), false);
+        }
+        for (var i = 0; i < 100; i++) {
+            assertNotNull(cache.get(MockEntity.key(i, i)).get());
+        }
+    }
+
     public void testGetAll() throws InterruptedException {
         var cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), true);
 
@@ -228,6 +422,150 @@ public class CacheTest extends TestCase {
         assertNull(all4);
     }
 
+    public void testGetAllAcrossGroups() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), true, 4);
+        for (var i = 1; i <= 8; i++) {
+            cache.putOnStore(new MockEntity(i, i), false);
+        }
+
+        // 空前缀不确定 group，需要扫描全部 group
+        cache.putPrefix(MockEntity.prefix());
+        var all = cache.getAll(MockEntity.prefix());
+        assertEquals(8, all.size());
+        var count = 0;
+        for (var holder : all) {
+            assertNotNull(holder.get());
+            count++;
+        }
+        assertEquals(8, count);
+
+        var one = cache.getAll(MockEntity.prefix(3));
+        assertEquals(1, one.size());
+        assertEquals(3, one.get(0).get().getKey1());
+    }
+
+    public void testScan() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false, 4);
+        for (var i = 1; i <= 5; i++) {
+            for (var j = 1; j <= 4; j++) {
+                cache.putOnStore(new MockEntity(i, j), j % 2 == 0);
+            }
+        }
+
+        assertNull(cache.scan(MockEntity.prefix(), 3));
+        cache.putPrefix(MockEntity.prefix());
+
+        // 跨 group 归并后整体按 key 有序
+        var cursor = cache.scan(MockEntity.prefix(), 3);
+        var keys = new ArrayList<org.canoegame.entity.Key<MockEntity>>();
+        while (cursor.hasNext()) {
+            var page = cursor.next();
+            assertTrue(page.size() <= 3);
+            for (var holder : page) {
+                keys.add(holder.getKey());
+            }
+        }
+        assertEquals(20, keys.size());
+        for (var i = 1; i < keys.size(); i++) {
+            assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+        }
+        assertTrue(cursor.next().isEmpty());
+
+        // 只在一个 group 内遍历，提前终止后凭 resumeKey 继续
+        cursor = cache.scan(MockEntity.prefix(2), 3);
+        var page = cursor.next();
+        assertEquals(3, page.size());
+        assertEquals(MockEntity.key(2, 3), cursor.getResumeKey());
+
+        var resumed = cache.scan(MockEntity.prefix(2), cursor.getResumeKey(), 3);
+        page = resumed.next();
+        assertEquals(1, page.size());
+        assertEquals(MockEntity.key(2, 4), page.get(0).getKey());
+        assertFalse(resumed.hasNext());
+    }
+
+    public void testGetAllAfterChange() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), false);
+        cache.putOnStore(new MockEntity(1, 3), false);
+        cache.putOnStore(new MockEntity(1, 1), true);
+        cache.putPrefix(MockEntity.prefix(1));
+        assertEquals(2, cache.getAll(MockEntity.prefix(1)).size());
+
+        // 有序索引建立之后的增删也要反映到前缀扫描中
+        var e2 = new MockEntity(1, 2);
+        cache.putOnStore(e2, false);
+        cache.putOnStore(new MockEntity(2, 1), false);
+        var all = cache.getAll(MockEntity.prefix(1));
+        assertEquals(3, all.size());
+        assertSame(e2, all.get(0).get());
+
+        cache.putOnStore(e2, true);
+        cache.putOnDelete(new MockEntity(1, 3));
+        all = cache.getAll(MockEntity.prefix(1));
+        assertEquals(3, all.size());
+        assertNull(cache.get(MockEntity.key(1, 3)).get());
+    }
+
+    public void testScheduleCleanUp() throws InterruptedException {
+        var cache = new Cache<>(MockEntity.class, 200, false, 2, TimingWheel::new);
+        var executor = new ScheduledThreadPoolExecutor(1);
+        cache.scheduleCleanUp(executor, 50, TimeUnit.MILLISECONDS);
+
+        var holder = cache.putOnStore(new MockEntity(1, 2), true);
+        assertSame(holder, cache.putOnFetch(new MockEntity(1, 2), true));
+        assertNotNull(holder.get());
+
+        Thread.sleep(500);
+        assertNull(holder.get());
+        executor.shutdown();
+    }
+
+    public void testExpiry() throws InterruptedException {
+        Expiry<MockEntity> expiry = Expiry.afterWrite((k, v) -> v != null && v.getKey1() == 1 ? 100 : 10000);
+        var cache = new Cache<>(MockEntity.class, expiry, 10000, false, 2);
+
+        var short1 = cache.putOnStore(new MockEntity(1, 2), true);
+        var short2 = cache.putOnStore(new MockEntity(1, 3), true);
+        var long1 = cache.putOnStore(new MockEntity(2, 2), true);
+        cache.putPrefix(MockEntity.prefix(1));
+        assertEquals(2, cache.getAll(MockEntity.prefix(1)).size());
+
+        Thread.sleep(300);
+        cache.cleanUp();
+        assertNull(short1.get());
+        assertNull(short2.get());
+        assertNotNull(long1.get());
+        // 成员被淘汰后前缀不再完整
+        assertNull(cache.getAll(MockEntity.prefix(1)));
+    }
+
+    public void testMaximumWeight() {
+        var cache = new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false, 1, 10, Weigher.singleton());
+        var manual = new ArrayList<EntityHolder<MockEntity>>();
+        for (var i = 0; i < 5; i++) {
+            manual.add(cache.putOnStore(new MockEntity(1, i), false));
+        }
+
+        var expiring = new ArrayList<EntityHolder<MockEntity>>();
+        for (var i = 100; i < 200; i++) {
+            expiring.add(cache.putOnStore(new MockEntity(1, i), true));
+        }
+
+        // manual 条目不计入容量，也不会被淘汰
+        for (var holder : manual) {
+            assertNotNull(holder.get());
+            assertSame(holder, cache.get(holder.getKey()));
+        }
+
+        var alive = 0;
+        for (var holder : expiring) {
+            if (holder.get() != null) {
+                alive++;
+            }
+        }
+        assertEquals(10, alive);
+    }
+
     public void testPutOnFetch() {
         var cache = new Cache<>(MockEntity.class, TimeUnit.SECONDS.toMillis(1), true);
         var e1 = new MockEntity(1, 2);
@@ -353,4 +691,24 @@ public class CacheTest extends TestCase {
         assertFalse(cache.exists(new MockStringKey("a_b"), false));
         assertEquals(0, cache.size());
     }
+
+    public void testTtlPrefixTouch() throws InterruptedException {
+        var cache = new Cache.TtlPrefix<Integer>(300);
+        assertTrue(cache.add(new MockStringKey("a")));
+        assertTrue(cache.add(new MockStringKey("b")));
+
+        for (var i = 0; i < 4; i++) {
+            Thread.sleep(100);
+            assertTrue(cache.exists(new MockStringKey("a_b"), true));
+        }
+        assertTrue(cache.exists(new MockStringKey("a"), false));
+        assertFalse(cache.exists(new MockStringKey("b"), false));
+
+        // 过期的前缀在 cleanUp 之前仍占位，但不影响新前缀的注册
+        assertTrue(cache.add(new MockStringKey("b_c")));
+        cache.invalidate(new MockStringKey("a_b"));
+        assertFalse(cache.exists(new MockStringKey("a"), false));
+        cache.cleanUp();
+        assertEquals(1, cache.size());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package org.canoegame.entity;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.WireFormat;
+import junit.framework.TestCase;
+import org.canoegame.entity.CacheTest.MockEntity;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+public class DeltaCommitmentTest extends TestCase {
+    private static DeltaCommitment<MockEntity, MockEntity.Field> commit(Commitment.Kind kind, int value,
+                                                                       MockEntity.Field... fields) {
+        var changes = new FieldSet<>(MockEntity.Field.class);
+        for (var f : fields) {
+            changes.add(f);
+        }
+        return DeltaCommitment.of(MockEntity.class, MockEntity.key(1, 1), kind, changes,
+                (out, f) -> out.writeInt32(f.getNumber(), value));
+    }
+
+    private static Map<Integer, Integer> decode(ByteString data) throws IOException {
+        Map<Integer, Integer> values = new HashMap<>();
+        var in = data.newCodedInput();
+        for (var tag = in.readTag(); tag != 0; tag = in.readTag()) {
+            assertNull(values.put(WireFormat.getTagFieldNumber(tag), in.readInt32()));
+        }
+        return values;
+    }
+
+    public void testOnlyChangedFields() throws IOException {
+        var c = commit(Commitment.Kind.UPDATE, 7, MockEntity.Field.FIELD_1);
+        assertEquals(Map.of(3, 7), decode(c.getData()));
+        assertEquals(1, c.getFieldMask().getPathsCount());
+
+        var empty = commit(Commitment.Kind.DELETE, 7);
+        assertTrue(empty.getData().isEmpty());
+    }
+
+    public void testInsertAll() throws IOException {
+        var c = commit(Commitment.Kind.INSERT, 1, new FieldSet<>(MockEntity.Field.class).addAll()
+                .toArray(new MockEntity.Field[0]));
+        assertEquals(Map.of(1, 1, 2, 1, 3, 1), decode(c.getData()));
+    }
+
+    public void testMerge() throws IOException {
+        var first = commit(Commitment.Kind.UPDATE, 1, MockEntity.Field.KEY_2, MockEntity.Field.FIELD_1);
+        var second = commit(Commitment.Kind.UPDATE, 2, MockEntity.Field.FIELD_1);
+
+        // 较新的值覆盖同一字段，其余字段保留
+        var merged = (DeltaCommitment<?, ?>) first.merge(second);
+        assertEquals(Commitment.Kind.UPDATE, merged.getKind());
+        assertEquals(2, merged.getChanges().size());
+        assertEquals(Map.of(2, 1, 3, 2), decode(merged.getData()));
+
+        var inserted = commit(Commitment.Kind.INSERT, 1, MockEntity.Field.values()).merge(second);
+        assertEquals(Commitment.Kind.INSERT, inserted.getKind());
+        assertEquals(Map.of(1, 1, 2, 1, 3, 2), decode(((DeltaCommitment<?, ?>) inserted).getData()));
+
+        assertNull(commit(Commitment.Kind.INSERT, 1, MockEntity.Field.values())
+                .merge(commit(Commitment.Kind.DELETE, 0)));
+    }
+
+    public void testMergeOtherType() {
+        var other = DeltaCommitment.of(DeltaCommitmentTest.class, MockEntity.key(1, 1), Commitment.Kind.UPDATE,
+                new FieldSet<>(MockEntity.Field.class), (out, f) -> {});
+        try {
+            commit(Commitment.Kind.UPDATE, 1, MockEntity.Field.FIELD_1).merge(other);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 不同实体类型的提交不能合并
+        }
+    }
+}
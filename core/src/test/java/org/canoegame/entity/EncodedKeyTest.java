@@ -0,0 +1,100 @@
+package org.canoegame.entity;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class EncodedKeyTest extends TestCase {
+    private static Key<Object> key(int a, String b) {
+        return new KeyEncoder().writeInt(a).writeString(b).toKey();
+    }
+
+    private static Key<Object> prefix(int a) {
+        return new KeyEncoder().writeInt(a).toKey();
+    }
+
+    public void testOrder() {
+        var ints = new int[]{Integer.MIN_VALUE, -100, -1, 0, 1, 100, Integer.MAX_VALUE};
+        for (var i = 1; i < ints.length; i++) {
+            assertTrue(prefix(ints[i - 1]).compareTo(prefix(ints[i])) < 0);
+        }
+
+        var longs = new long[]{Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE};
+        for (var i = 1; i < longs.length; i++) {
+            assertTrue(new KeyEncoder().writeLong(longs[i - 1]).toKey()
+                    .compareTo(new KeyEncoder().writeLong(longs[i]).toKey()) < 0);
+        }
+
+        var doubles = new double[]{Double.NEGATIVE_INFINITY, -2.5, -0.5, 0.0, 0.5, 2.5, Double.POSITIVE_INFINITY};
+        for (var i = 1; i < doubles.length; i++) {
+            assertTrue(new KeyEncoder().writeDouble(doubles[i - 1]).toKey()
+                    .compareTo(new KeyEncoder().writeDouble(doubles[i]).toKey()) < 0);
+        }
+
+        // 字符串比较与 String 的自然顺序一致（ASCII 范围内），短串排在以它开头的长串之前
+        var strings = new String[]{"", "\0", "\0\0", "a", "a\0", "ab", "b"};
+        for (var i = 1; i < strings.length; i++) {
+            assertTrue(strings[i], key(1, strings[i - 1]).compareTo(key(1, strings[i])) < 0);
+        }
+
+        // 前面的字段优先
+        assertTrue(key(1, "z").compareTo(key(2, "a")) < 0);
+    }
+
+    public void testPrefix() {
+        var p = prefix(7);
+        assertTrue(p.isPrefixOf(key(7, "abc")));
+        assertTrue(p.isPrefixOf(p));
+        assertFalse(p.isPrefixOf(key(8, "abc")));
+        assertFalse(key(7, "abc").isPrefixOf(p));
+
+        // 字符串字段带结束符，"ab" 不是 "abc" 的前缀
+        var ab = new KeyEncoder().writeInt(7).writeString("ab").toKey();
+        assertFalse(ab.isPrefixOf(key(7, "abc")));
+
+        assertEquals(p.groupCode(), key(7, "abc").groupCode());
+        assertTrue(p.groupCode() >= 0);
+        assertEquals(-1, new KeyEncoder().toKey().groupCode());
+    }
+
+    public void testEquals() {
+        assertEquals(key(1, "a"), key(1, "a"));
+        assertEquals(key(1, "a").hashCode(), key(1, "a").hashCode());
+        assertFalse(key(1, "a").equals(key(1, "b")));
+    }
+
+    public void testEntityType() {
+        // 两种实体的主键值相同，key 也不相等
+        Key<Object> a = new KeyEncoder().writeInt(1).toKey(CacheTest.MockEntity.class);
+        Key<Object> b = new KeyEncoder().writeInt(1).toKey(EncodedKeyTest.class);
+        assertFalse(a.equals(b));
+        assertFalse(a.isPrefixOf(b));
+        assertTrue(a.compareTo(b) != 0);
+        assertTrue(a.fingerprint() != b.fingerprint());
+        assertEquals(a, new KeyEncoder().writeInt(1).toKey(CacheTest.MockEntity.class));
+        assertEquals(a.groupCode(), b.groupCode());
+
+        Map<Key<Object>, String> map = new HashMap<>();
+        map.put(a, "a");
+        map.put(b, "b");
+        assertEquals(2, map.size());
+        assertEquals("a", map.get(new KeyEncoder().writeInt(1).toKey(CacheTest.MockEntity.class)));
+    }
+
+    public void testCache() {
+        var cache = new Cache<>(CacheTest.MockEntity.class, TimeUnit.SECONDS.toMillis(1), false);
+        Key<CacheTest.MockEntity> prefix = new KeyEncoder().writeInt(1).toKey();
+        cache.putPrefix(prefix);
+        for (var name : new String[]{"c", "a", "b"}) {
+            Key<CacheTest.MockEntity> key = new KeyEncoder().writeInt(1).writeString(name).toKey();
+            assertNull(cache.get(key).get());
+        }
+
+        var all = cache.getAll(prefix);
+        assertEquals(3, all.size());
+        assertEquals(new KeyEncoder().writeInt(1).writeString("a").toKey(), all.get(0).getKey());
+        assertEquals(new KeyEncoder().writeInt(1).writeString("c").toKey(), all.get(2).getKey());
+    }
+}
@@ -0,0 +1,312 @@
+package org.canoegame.entity;
+
+import junit.framework.TestCase;
+import org.canoegame.entity.CacheTest.MockEntity;
+import org.canoegame.schedule.Actor;
+import org.canoegame.schedule.TaskletContext;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class EntityManagerTest extends TestCase {
+    private static class MockLoader implements EntityLoader<MockEntity> {
+        final AtomicInteger loads = new AtomicInteger();
+        final CompletableFuture<MockEntity> pending = new CompletableFuture<>();
+        final Map<Key<MockEntity>, MockEntity> store = new HashMap<>();
+        final List<Integer> batches = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<MockEntity> load(Key<MockEntity> key) {
+            loads.incrementAndGet();
+            return pending;
+        }
+
+        @Override
+        public CompletableFuture<Map<Key<MockEntity>, MockEntity>> loadMany(Collection<Key<MockEntity>> keys) {
+            loads.incrementAndGet();
+            batches.add(keys.size());
+            Map<Key<MockEntity>, MockEntity> values = new HashMap<>();
+            for (var key : keys) {
+                var e = store.get(key);
+                if (e != null) {
+                    values.put(key, e);
+                }
+            }
+            return CompletableFuture.completedFuture(values);
+        }
+
+        @Override
+        public CompletableFuture<List<MockEntity>> loadAll(Key<MockEntity> prefix) {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(List.of(new MockEntity(1, 1), new MockEntity(1, 2)));
+        }
+    }
+
+    private EntityManager create(MockLoader loader) {
+        var manager = new EntityManager();
+        manager.register(MockEntity.class, new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false), loader);
+        return manager;
+    }
+
+    public void testCoalesce() {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        var key = MockEntity.key(1, 1);
+
+        var f1 = manager.getAsync(MockEntity.class, key);
+        var f2 = manager.getAsync(MockEntity.class, key);
+        assertFalse(f1.isDone());
+        assertEquals(1, loader.loads.get());
+
+        var e = new MockEntity(1, 1);
+        loader.pending.complete(e);
+        assertSame(e, f1.join());
+        assertSame(e, f2.join());
+
+        // 已进入缓存，不再加载
+        assertSame(e, manager.get(MockEntity.class, key));
+        assertEquals(1, loader.loads.get());
+    }
+
+    public void testAbsent() {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        var key = MockEntity.key(1, 1);
+
+        loader.pending.complete(null);
+        assertNull(manager.get(MockEntity.class, key));
+        assertNull(manager.get(MockEntity.class, key));
+        assertEquals(1, loader.loads.get());
+    }
+
+    public void testAbsentWithoutGroup() {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        // groupCode 为负的 key 不进入缓存，不存在时也要能返回
+        loader.pending.complete(null);
+        assertNull(manager.get(MockEntity.class, MockEntity.key(-1, 1)));
+        assertEquals(1, loader.loads.get());
+    }
+
+    public void testReadAfterExpire() throws InterruptedException {
+        var loader = new MockLoader();
+        var cache = new Cache<>(MockEntity.class, 100, false);
+        var manager = new EntityManager();
+        manager.register(MockEntity.class, cache, loader);
+        var key = MockEntity.key(1, 1);
+        loader.pending.complete(new MockEntity(1, 1));
+        var entity = manager.get(MockEntity.class, key);
+
+        var executor = new ScheduledThreadPoolExecutor(1);
+        var actor = new Actor(new TaskletContext(), "test");
+        actor.setExecutor(executor);
+        List<MockEntity> reads = new ArrayList<>();
+        var first = new CountDownLatch(1);
+        actor.execute(() -> {
+            reads.add(entity.read());
+            first.countDown();
+        });
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        // 先回放锁外命中的访问记录
+        cache.cleanUp();
+
+        // 实体持有的 holder 过期后重新获取，而不是当作不存在
+        Thread.sleep(150);
+        cache.cleanUp();
+        manager.get(MockEntity.class, key);
+        var second = new CountDownLatch(1);
+        actor.execute(() -> {
+            reads.add(entity.read());
+            reads.add(entity.copyWrite());
+            second.countDown();
+        });
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(3, reads.size());
+        assertFalse(reads.contains(null));
+        assertEquals(2, loader.loads.get());
+    }
+
+    public void testFailure() {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        var key = MockEntity.key(1, 1);
+
+        loader.pending.completeExceptionally(new IllegalStateException("db down"));
+        assertTrue(manager.getAsync(MockEntity.class, key).isCompletedExceptionally());
+        // 失败不缓存，下次重新加载
+        assertTrue(manager.getAsync(MockEntity.class, key).isCompletedExceptionally());
+        assertEquals(2, loader.loads.get());
+    }
+
+    public void testGetAll() {
+        var loader = new MockLoader();
+        var manager = create(loader);
+
+        assertEquals(2, manager.getAll(MockEntity.class, MockEntity.prefix(1)).size());
+        assertEquals(2, manager.getAll(MockEntity.class, MockEntity.prefix(1)).size());
+        assertEquals(1, loader.loads.get());
+    }
+
+    public void testGetAllEvicted() {
+        var loader = new MockLoader();
+        var manager = new EntityManager();
+        manager.register(MockEntity.class, new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false, 1, 1,
+                Weigher.singleton()), loader);
+
+        // 容量只够一个实体，前缀不能算作完整
+        assertEquals(2, manager.getAll(MockEntity.class, MockEntity.prefix(1)).size());
+        assertEquals(2, manager.getAll(MockEntity.class, MockEntity.prefix(1)).size());
+        assertEquals(2, loader.loads.get());
+    }
+
+    public void testGetMany() {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        List<Key<MockEntity>> keys = new ArrayList<>();
+        for (var i = 0; i < 20; i++) {
+            keys.add(MockEntity.key(i, 1));
+            if (i % 2 == 0) {
+                loader.store.put(MockEntity.key(i, 1), new MockEntity(i, 1));
+            }
+        }
+
+        var cached = new MockEntity(1, 1);
+        loader.pending.complete(cached);
+        manager.get(MockEntity.class, MockEntity.key(1, 1));
+
+        var all = manager.getMany(MockEntity.class, keys);
+        assertEquals(11, all.size());
+        assertSame(cached, all.get(MockEntity.key(1, 1)));
+        assertSame(loader.store.get(MockEntity.key(0, 1)), all.get(MockEntity.key(0, 1)));
+        // 未命中的 19 个 key 合并成一次批量加载
+        assertEquals(List.of(19), loader.batches);
+
+        // 存在与不存在都已缓存
+        assertEquals(11, manager.getMany(MockEntity.class, keys).size());
+        assertEquals(List.of(19), loader.batches);
+    }
+
+    public void testResumeOnActor() throws InterruptedException {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        var executor = new ScheduledThreadPoolExecutor(2);
+        var actor = new Actor(new TaskletContext(), "test");
+        actor.setExecutor(executor);
+
+        var resumed = new AtomicReference<Actor>();
+        var rejected = new AtomicReference<Throwable>();
+        var done = new CountDownLatch(1);
+        actor.execute(() -> {
+            try {
+                manager.get(MockEntity.class, MockEntity.key(1, 1));
+            } catch (IllegalStateException e) {
+                rejected.set(e);
+            }
+
+            manager.getAsync(MockEntity.class, MockEntity.key(1, 1)).thenAccept(v -> {
+                resumed.set(Actor.currentActor());
+                done.countDown();
+            });
+        });
+
+        // 在 actor 之外的线程完成加载
+        Thread.sleep(100);
+        loader.pending.complete(new MockEntity(1, 1));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(actor, resumed.get());
+        assertNotNull(rejected.get());
+        executor.shutdown();
+    }
+
+    public void testReadOwnInsert() throws InterruptedException {
+        var loader = new MockLoader();
+        var cache = new Cache<>(MockEntity.class, TimeUnit.MINUTES.toMillis(1), false);
+        cache.enableNegativeFilter(1024);
+        var manager = new EntityManager();
+        manager.register(MockEntity.class, cache, loader);
+        var key = MockEntity.key(1, 1);
+        // 先记下“不存在”
+        loader.pending.complete(null);
+        assertNull(manager.get(MockEntity.class, key));
+
+        var executor = new ScheduledThreadPoolExecutor(1);
+        var actor = new Actor(new TaskletContext(), "test");
+        actor.setExecutor(executor);
+        var conflict = new AtomicReference<Throwable>();
+        var done = new CountDownLatch(1);
+        actor.execute(() -> {
+            var entity = manager.add(new MockEntity(1, 1));
+            entity.setField1(5);
+            entity.commit();
+
+            try {
+                manager.removeLocalCopy(key);
+                manager.add(new MockEntity(1, 1)).commit();
+            } catch (CommitConflictException e) {
+                conflict.set(e);
+            }
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        // 写回落盘之前就能读到新建的实体，不再加载；同 key 再次新建按冲突处理
+        assertEquals(5, manager.get(MockEntity.class, key).field1);
+        assertEquals(1, loader.loads.get());
+        assertNotNull(conflict.get());
+    }
+
+    public void testCommitConflict() throws InterruptedException {
+        var loader = new MockLoader();
+        var manager = create(loader);
+        // 两个副本在同一 tasklet 里交替提交，关闭本地副本检查
+        manager.setAccessValidation(false);
+        var key = MockEntity.key(1, 1);
+        loader.pending.complete(new MockEntity(1, 1));
+        var entity = manager.get(MockEntity.class, key);
+
+        var executor = new ScheduledThreadPoolExecutor(1);
+        var actor = new Actor(new TaskletContext(), "test");
+        actor.setExecutor(executor);
+        var conflict = new AtomicReference<Throwable>();
+        var done = new CountDownLatch(1);
+        actor.execute(() -> {
+            try {
+                var first = entity.copyWrite();
+                first.setField1(1);
+                manager.removeLocalCopy(key);
+                var second = entity.copyWrite();
+                second.setField1(2);
+                second.commit();
+
+                try {
+                    first.commit();
+                } catch (CommitConflictException e) {
+                    conflict.set(e);
+                }
+
+                manager.update(MockEntity.class, key, e -> e.setField1(3), 2);
+            } finally {
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertNotNull(conflict.get());
+        var current = manager.get(MockEntity.class, key);
+        assertEquals(3, current.field1);
+        assertEquals(2, current.getRevision());
+    }
+}
@@ -0,0 +1,22 @@
+package org.canoegame.entity;
+
+import junit.framework.TestCase;
+import org.canoegame.entity.CacheTest.MockEntity;
+
+public class EntityTest extends TestCase {
+    public void testCloneIsolation() {
+        var snapshot = new MockEntity(1, 1);
+        var copy = snapshot.clone();
+        copy.setFlag(EntityFlag.WRITABLE);
+        copy.setFlag(EntityFlag.DIRTY);
+
+        // 副本的标记不影响缓存中的快照
+        assertTrue(copy.hasFlag(EntityFlag.WRITABLE));
+        assertFalse(snapshot.hasFlag(EntityFlag.WRITABLE));
+        assertFalse(snapshot.hasFlag(EntityFlag.DIRTY));
+
+        copy.clearFlag(EntityFlag.DIRTY);
+        assertTrue(copy.hasFlag(EntityFlag.WRITABLE));
+        assertFalse(copy.hasFlag(EntityFlag.DIRTY));
+    }
+}
@@ -69,6 +69,10 @@ public class FieldSetTest extends TestCase {
         FieldSet<TestField> fs = new FieldSet<>(TestField.class);
         fs.addAll(Arrays.asList(TestField.class.getEnumConstants()));
         assertEquals(2, fs.size());
+
+        var all = new FieldSet<>(TestField.class).addAll();
+        assertEquals(2, all.size());
+        assertEquals(fs, all);
     }
 
     public void testRemoveAll() {
@@ -0,0 +1,76 @@
+package org.canoegame.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 前缀表 exists 在多线程下的吞吐，每次 Cache.get 都会调用；main 依次以 1~64 线程运行
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrefixBenchmark {
+    private static final int PREFIXES = 1 << 10;
+    private static final int SIZE = 1 << 14;
+    private static final int MASK = SIZE - 1;
+
+    @Param({"false", "true"})
+    public boolean ttl;
+
+    private Cache.Prefix<CacheTest.MockEntity> prefix;
+    private Key<CacheTest.MockEntity>[] keys;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index = ThreadLocalRandom.current().nextInt();
+    }
+
+    @Setup
+    public void setUp() {
+        prefix = ttl ? new Cache.TtlPrefix<>(TimeUnit.MINUTES.toMillis(30)) : new Cache.ManualPrefix<>();
+        for (var i = 0; i < PREFIXES; i++) {
+            prefix.add(CacheTest.MockEntity.prefix(i));
+        }
+
+        keys = new Key[SIZE];
+        for (var i = 0; i < SIZE; i++) {
+            // 一半命中已注册的前缀
+            keys[i] = CacheTest.MockEntity.key(i % (PREFIXES * 2), i);
+        }
+    }
+
+    @Benchmark
+    public boolean exists(Cursor cursor) {
+        return prefix.exists(keys[cursor.index++ & MASK], false);
+    }
+
+    @Benchmark
+    public boolean existsAndTouch(Cursor cursor) {
+        return prefix.exists(keys[cursor.index++ & MASK], true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (var threads = 1; threads <= 64; threads <<= 1) {
+            new Runner(new OptionsBuilder()
+                    .include(PrefixBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
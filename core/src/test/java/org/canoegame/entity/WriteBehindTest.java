@@ -0,0 +1,181 @@
+package org.canoegame.entity;
+
+import junit.framework.TestCase;
+import org.canoegame.entity.CacheTest.MockEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class WriteBehindTest extends TestCase {
+    private static class MockStorage implements Storage {
+        final List<List<Commitment>> batches = new ArrayList<>();
+        CompletableFuture<Void> result = CompletableFuture.completedFuture(null);
+
+        @Override
+        public synchronized CompletableFuture<Void> write(List<Commitment> batch) {
+            batches.add(batch);
+            return result;
+        }
+
+        synchronized int count() {
+            var n = 0;
+            for (var batch : batches) {
+                n += batch.size();
+            }
+            return n;
+        }
+    }
+
+    private ScheduledThreadPoolExecutor executor;
+
+    @Override
+    protected void setUp() {
+        executor = new ScheduledThreadPoolExecutor(1);
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Commitment commit(int key, Commitment.Kind kind, MockEntity.Field... fields) {
+        return commit(MockEntity.class, key, kind, fields);
+    }
+
+    private static Commitment commit(Class<?> type, int key, Commitment.Kind kind, MockEntity.Field... fields) {
+        var changes = new FieldSet<>(MockEntity.Field.class);
+        for (var f : fields) {
+            changes.add(f);
+        }
+        return DeltaCommitment.of(type, MockEntity.key(key, 0), kind, changes,
+                (out, f) -> out.writeInt32(f.getNumber(), key));
+    }
+
+    public void testCoalesce() {
+        var storage = new MockStorage();
+        var writeBehind = new WriteBehind(storage, executor, 16, 64, 1, TimeUnit.HOURS);
+
+        assertTrue(writeBehind.offer(commit(1, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1)));
+        assertTrue(writeBehind.offer(commit(1, Commitment.Kind.UPDATE, MockEntity.Field.KEY_2)));
+        assertTrue(writeBehind.offer(commit(2, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1)));
+        assertEquals(2, writeBehind.getPendingCount());
+        writeBehind.flush().join();
+
+        assertEquals(1, storage.batches.size());
+        var batch = storage.batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(MockEntity.key(1, 0), batch.get(0).getKey());
+        assertEquals(2, batch.get(0).getChanges().size());
+        assertEquals(1, writeBehind.getCoalescedCount());
+        assertEquals(2, writeBehind.getWrittenCount());
+    }
+
+    public void testEntityType() {
+        var storage = new MockStorage();
+        var writeBehind = new WriteBehind(storage, executor, 16, 64, 1, TimeUnit.HOURS);
+
+        // key 相同而实体类型不同的提交互不合并
+        writeBehind.offer(commit(MockEntity.class, 1, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1));
+        writeBehind.offer(commit(WriteBehindTest.class, 1, Commitment.Kind.DELETE));
+        assertEquals(2, writeBehind.getPendingCount());
+        writeBehind.flush().join();
+
+        var batch = storage.batches.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(MockEntity.class, batch.get(0).getEntityType());
+        assertEquals(Commitment.Kind.UPDATE, batch.get(0).getKind());
+        assertEquals(WriteBehindTest.class, batch.get(1).getEntityType());
+        assertEquals(0, writeBehind.getCoalescedCount());
+    }
+
+    public void testInsertThenDelete() {
+        var storage = new MockStorage();
+        var writeBehind = new WriteBehind(storage, executor, 16, 64, 1, TimeUnit.HOURS);
+
+        writeBehind.offer(commit(1, Commitment.Kind.INSERT, MockEntity.Field.values()));
+        writeBehind.offer(commit(1, Commitment.Kind.DELETE));
+        assertEquals(0, writeBehind.getPendingCount());
+
+        writeBehind.offer(commit(2, Commitment.Kind.DELETE));
+        writeBehind.offer(commit(2, Commitment.Kind.INSERT, MockEntity.Field.values()));
+        writeBehind.flush().join();
+
+        assertEquals(1, storage.count());
+        assertEquals(Commitment.Kind.UPDATE, storage.batches.get(0).get(0).getKind());
+    }
+
+    public void testBatch() {
+        var storage = new MockStorage();
+        var writeBehind = new WriteBehind(storage, executor, 2, 64, 1, TimeUnit.HOURS);
+        for (var i = 0; i < 5; i++) {
+            writeBehind.offer(commit(i, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1));
+        }
+        writeBehind.flush().join();
+
+        assertEquals(5, storage.count());
+        for (var batch : storage.batches) {
+            assertTrue(batch.size() <= 2);
+        }
+    }
+
+    public void testMaxDelay() throws InterruptedException {
+        var storage = new MockStorage();
+        var writeBehind = new WriteBehind(storage, executor, 16, 64, 10, TimeUnit.MILLISECONDS);
+        writeBehind.offer(commit(1, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1));
+
+        for (var i = 0; i < 100 && storage.count() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, storage.count());
+    }
+
+    public void testBounded() {
+        var storage = new MockStorage();
+        storage.result = new CompletableFuture<>();
+        var writeBehind = new WriteBehind(storage, executor, 1, 2, 1, TimeUnit.HOURS);
+
+        // 第一条被取出写入，一直未完成
+        writeBehind.offer(commit(1, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1));
+        var flushed = writeBehind.flush();
+        while (storage.count() == 0) {
+            Thread.onSpinWait();
+        }
+        assertTrue(writeBehind.offer(commit(2, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1)));
+        assertTrue(writeBehind.offer(commit(3, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1)));
+        assertFalse(writeBehind.offer(commit(4, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1)));
+        // 已在排队的 key 仍可合并
+        assertTrue(writeBehind.offer(commit(3, Commitment.Kind.UPDATE, MockEntity.Field.KEY_2)));
+
+        storage.result.complete(null);
+        flushed.join();
+        writeBehind.flush().join();
+        assertEquals(3, storage.count());
+    }
+
+    public void testRetry() {
+        var storage = new MockStorage();
+        storage.result = CompletableFuture.failedFuture(new IllegalStateException("db down"));
+        var writeBehind = new WriteBehind(storage, executor, 16, 64, 1, TimeUnit.HOURS);
+
+        writeBehind.offer(commit(1, Commitment.Kind.UPDATE, MockEntity.Field.FIELD_1));
+        try {
+            writeBehind.flush().join();
+            fail();
+        } catch (Exception e) {
+            // 预期写入失败
+        }
+        assertEquals(1, writeBehind.getFailureCount());
+        assertEquals(1, writeBehind.getPendingCount());
+
+        // 失败的提交排在后来的提交之前，合并后一起写入
+        writeBehind.offer(commit(1, Commitment.Kind.UPDATE, MockEntity.Field.KEY_2));
+        storage.result = CompletableFuture.completedFuture(null);
+        writeBehind.flush().join();
+        var last = storage.batches.get(storage.batches.size() - 1);
+        assertEquals(1, last.size());
+        assertEquals(2, last.get(0).getChanges().size());
+    }
+}
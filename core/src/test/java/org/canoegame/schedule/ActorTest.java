@@ -3,8 +3,10 @@ package org.canoegame.schedule;
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class ActorTest extends TestCase {
@@ -50,4 +52,38 @@ public class ActorTest extends TestCase {
                 TimeUnit.SECONDS);
         Thread.sleep(10000);
     }
-}
\ No newline at end of file
+
+    public void testCounters() throws InterruptedException {
+        var actor = new Actor(new TaskletContext(), "test");
+        var executor = new ScheduledThreadPoolExecutor(1);
+        actor.setExecutor(executor);
+        var runs = new AtomicInteger();
+        var done = new CountDownLatch(1);
+        actor.setTrace(new ActorTrace() {
+            @Override
+            public void onRun(Actor actor) {
+                runs.incrementAndGet();
+            }
+
+            @Override
+            public void onIdle(Actor actor, boolean rescheduled) {
+                // schedule 本身也经由一个 tasklet 放入延时队列
+                if (actor.getExecutedCount() == 11 && actor.getDelayedCount() == 1) {
+                    done.countDown();
+                }
+            }
+        });
+
+        for (var i = 0; i < 10; i++) {
+            actor.execute(() -> {});
+        }
+        actor.schedule(() -> {}, 10, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(runs.get(), actor.getRunCount());
+        assertEquals(0, actor.getFailureCount());
+        assertEquals(0, actor.getPendingCount());
+        assertEquals(0, actor.getScheduledCount());
+    }
+}
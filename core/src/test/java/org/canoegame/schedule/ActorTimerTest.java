@@ -0,0 +1,84 @@
+package org.canoegame.schedule;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class ActorTimerTest extends TestCase {
+    private ActorTimer timer;
+    private ScheduledThreadPoolExecutor executor;
+    private Actor actor;
+
+    @Override
+    protected void setUp() {
+        timer = new ActorTimer("test-timer");
+        executor = new ScheduledThreadPoolExecutor(1);
+        actor = new Actor(new TaskletContext(), "test");
+        actor.setExecutor(executor);
+        actor.setTimer(timer);
+    }
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+        timer.close();
+    }
+
+    public void testCancelAndReset() throws InterruptedException {
+        Set<Integer> ran = new HashSet<>();
+        var done = new CountDownLatch(1);
+        actor.execute(() -> {
+            var tasklets = new ArrayList<ScheduledTasklet>();
+            for (var i = 0; i < 100; i++) {
+                var n = i;
+                tasklets.add(actor.schedule(() -> ran.add(n), 10, TimeUnit.MILLISECONDS));
+            }
+            for (var i = 0; i < 100; i += 2) {
+                tasklets.get(i).cancel();
+            }
+            // 重设后只在新的时间触发一次
+            for (var i = 1; i < 100; i += 4) {
+                tasklets.get(i).reset(30, TimeUnit.MILLISECONDS);
+            }
+            actor.schedule(done::countDown, 100, TimeUnit.MILLISECONDS);
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(50, ran.size());
+        for (var n : ran) {
+            assertEquals(1, n % 2);
+        }
+        assertEquals(51, actor.getDelayedCount());
+        assertEquals(0, actor.getScheduledCount());
+    }
+
+    public void testOrder() throws InterruptedException {
+        var ran = new ArrayList<Integer>();
+        var done = new CountDownLatch(1);
+        actor.schedule(() -> ran.add(3), 150, TimeUnit.MILLISECONDS);
+        actor.schedule(() -> ran.add(1), 50, TimeUnit.MILLISECONDS);
+        actor.schedule(() -> ran.add(2), 100, TimeUnit.MILLISECONDS);
+        actor.schedule(done::countDown, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), ran);
+    }
+
+    // ticker 睡到远处的定时时，新来的近处定时仍按时触发
+    public void testEarlierTimerWakesTicker() throws InterruptedException {
+        actor.schedule(() -> { }, 10, TimeUnit.MINUTES);
+        Thread.sleep(50);
+
+        var done = new CountDownLatch(1);
+        var start = System.nanoTime();
+        actor.schedule(done::countDown, 20, TimeUnit.MILLISECONDS);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+}
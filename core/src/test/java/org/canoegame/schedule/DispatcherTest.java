@@ -0,0 +1,97 @@
+package org.canoegame.schedule;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DispatcherTest extends TestCase {
+    private static void runActors(Dispatcher dispatcher) throws InterruptedException {
+        var actors = 1000;
+        var done = new CountDownLatch(actors);
+        var executed = new AtomicInteger();
+        for (var i = 0; i < actors; i++) {
+            var actor = new Actor(new TaskletContext(), "actor-" + i);
+            actor.setExecutor(dispatcher);
+            for (var j = 0; j < 10; j++) {
+                actor.execute(executed::incrementAndGet);
+            }
+            actor.schedule(done::countDown, 10, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(actors * 10, executed.get());
+        dispatcher.shutdown();
+        assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    public void testWorkStealing() throws InterruptedException {
+        runActors(Dispatcher.workStealing("test", 4));
+    }
+
+    public void testBlocking() throws InterruptedException {
+        var dispatcher = Dispatcher.blocking("test");
+        // 同时阻塞的 actor 各占一个线程，不会相互拖住
+        var actors = 20;
+        var started = new CountDownLatch(actors);
+        var release = new CountDownLatch(1);
+        for (var i = 0; i < actors; i++) {
+            var actor = new Actor(new TaskletContext(), "actor-" + i);
+            actor.setExecutor(dispatcher);
+            actor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        runActors(dispatcher);
+    }
+
+    // JDK 21 之前退回 blocking，两种情况都要能运行
+    public void testVirtualThreads() throws InterruptedException {
+        runActors(Dispatcher.virtualThreads("test"));
+    }
+
+    public void testFixedDelay() throws InterruptedException {
+        var dispatcher = Dispatcher.workStealing("test", 4);
+        var running = new AtomicInteger();
+        var overlapped = new AtomicInteger();
+        var runs = new CountDownLatch(5);
+        var future = dispatcher.scheduleWithFixedDelay(() -> {
+            if (running.incrementAndGet() > 1) {
+                overlapped.incrementAndGet();
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            runs.countDown();
+        }, 0, 1, TimeUnit.MILLISECONDS);
+
+        assertTrue(runs.await(5, TimeUnit.SECONDS));
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertEquals(0, overlapped.get());
+        dispatcher.shutdown();
+    }
+
+    public void testCancel() throws InterruptedException {
+        var dispatcher = Dispatcher.workStealing("test", 1);
+        var ran = new AtomicInteger();
+        var future = dispatcher.schedule(ran::incrementAndGet, 20, TimeUnit.MILLISECONDS);
+        assertTrue(future.getDelay(TimeUnit.MILLISECONDS) > 0);
+        assertTrue(future.cancel(false));
+        Thread.sleep(50);
+        assertEquals(0, ran.get());
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,134 @@
+package org.canoegame.schedule;
+
+import org.canoegame.util.MpscQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.Control;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// 生产者向 actor 投递消息的吞吐：mailbox 为单个消费者对比两种队列，execute 为经过 Actor 的完整路径；
+// main 依次以 1~32 个生产者运行。每个生产者在途的消息有上限，避免消费者跟不上时队列无限增长
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailboxBenchmark {
+    private static final int MAX_IN_FLIGHT = 1024;
+
+    @State(Scope.Group)
+    public static class Mailbox {
+        @Param({"ConcurrentLinkedQueue", "MpscQueue"})
+        public String queue;
+
+        Consumer<Producer> offer;
+        Supplier<Producer> poll;
+
+        @Setup
+        public void setUp() {
+            if (queue.equals("MpscQueue")) {
+                var q = new MpscQueue<Producer>(256);
+                offer = q::offer;
+                poll = q::poll;
+            } else {
+                var q = new ConcurrentLinkedQueue<Producer>();
+                offer = q::add;
+                poll = q::poll;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer implements Runnable {
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        @Override
+        public void run() {
+            inFlight.decrementAndGet();
+        }
+
+        // 消费者先于生产者结束本轮时不再等待
+        void acquire(Control control) {
+            while (inFlight.get() >= MAX_IN_FLIGHT && !control.stopMeasurement) {
+                Thread.onSpinWait();
+            }
+            inFlight.incrementAndGet();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class ActorState {
+        ScheduledThreadPoolExecutor executor;
+        Actor actor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            executor = new ScheduledThreadPoolExecutor(1);
+            actor = new Actor(new TaskletContext(), "benchmark");
+            actor.setExecutor(executor);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    @Group("mailbox")
+    public void offer(Mailbox mailbox, Producer producer, Control control) {
+        producer.acquire(control);
+        mailbox.offer.accept(producer);
+    }
+
+    @Benchmark
+    @Group("mailbox")
+    public void poll(Mailbox mailbox, Blackhole bh) {
+        var producer = mailbox.poll.get();
+        if (producer != null) {
+            producer.run();
+        }
+        bh.consume(producer);
+    }
+
+    @Benchmark
+    public void execute(ActorState state, Producer producer, Control control) {
+        producer.acquire(control);
+        state.actor.execute(producer);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (var producers = 1; producers <= 32; producers <<= 1) {
+            new Runner(new OptionsBuilder()
+                    .include(MailboxBenchmark.class.getSimpleName() + ".mailbox")
+                    .threadGroups(producers, 1)
+                    .build()).run();
+            new Runner(new OptionsBuilder()
+                    .include(MailboxBenchmark.class.getSimpleName() + ".execute")
+                    .threads(producers)
+                    .build()).run();
+        }
+    }
+}
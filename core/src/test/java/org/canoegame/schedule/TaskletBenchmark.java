@@ -0,0 +1,58 @@
+package org.canoegame.schedule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// 每条消息创建并运行一个 tasklet 的开销；main 带上 GC profiler，看 gc.alloc.rate.norm（每次操作分配的字节数）
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskletBenchmark {
+    private static final Runnable NOOP = () -> {};
+    private static final TaskletLocal<Object> LOCAL = new TaskletLocal<>();
+    private static final Runnable TOUCH_LOCAL = () -> LOCAL.set(LOCAL);
+
+    private final TaskletContext context = new TaskletContext();
+
+    @Benchmark
+    public Tasklet run() {
+        var tasklet = new Tasklet(null, NOOP, null);
+        context.run(tasklet);
+        return tasklet;
+    }
+
+    @Benchmark
+    public Tasklet runWithLocal() {
+        var tasklet = new Tasklet(null, TOUCH_LOCAL, null);
+        context.run(tasklet);
+        return tasklet;
+    }
+
+    @Benchmark
+    public void contextRun() {
+        context.run(NOOP);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TaskletBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -46,4 +46,40 @@ public class TaskletContextTest extends TestCase {
             assertEquals("value", var.get());
         });
     }
-}
\ No newline at end of file
+
+    public void testLocals() {
+        var context = new TaskletContext();
+        var locals = new ArrayList<TaskletLocal<Integer>>();
+        // 超过初始的槽位数，存储随之扩容；再超过数组容量的放入 overflow
+        for (var i = 0; i < 40; i++) {
+            locals.add(new TaskletLocal<>());
+        }
+        var supplied = new TaskletLocal<>(() -> "supplied");
+
+        context.run(() -> {
+            assertNull(locals.get(9).get());
+            assertNull(locals.get(39).get());
+            for (var i = 0; i < locals.size(); i++) {
+                locals.get(i).set(i);
+            }
+            for (var i = 0; i < locals.size(); i++) {
+                assertEquals(Integer.valueOf(i), locals.get(i).get());
+            }
+            locals.get(3).remove();
+            assertNull(locals.get(3).get());
+            locals.get(30).remove();
+            assertNull(locals.get(30).get());
+            assertEquals(Integer.valueOf(31), locals.get(31).get());
+            assertEquals("supplied", supplied.get());
+            // 未指定名字时取 runnable 的类名
+            assertTrue(Tasklet.currentTasklet().getName().startsWith(TaskletContextTest.class.getName()));
+        });
+
+        // 每个 tasklet 的存储相互独立
+        context.run(() -> {
+            assertNull(locals.get(0).get());
+            assertNull(locals.get(39).get());
+        });
+        assertNull(Tasklet.currentTasklet());
+    }
+}
@@ -0,0 +1,80 @@
+package org.canoegame.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// TtlEngine 环与 TimingWheel 在 touch、增删和到期淘汰上的单线程开销对比
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpiryEngineBenchmark {
+    private static final int SIZE = 1 << 16;
+    private static final int MASK = SIZE - 1;
+    private static final long TTL = TimeUnit.MINUTES.toMillis(30);
+
+    @Param({"ring", "wheel"})
+    public String engineType;
+
+    private ExpiryEngine<Integer> engine;
+    private ExpiryEngine.Node<Integer>[] nodes;
+    private long now;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        engine = create(engineType);
+        nodes = new ExpiryEngine.Node[SIZE];
+        for (var i = 0; i < SIZE; i++) {
+            nodes[i] = engine.add(i);
+        }
+        now = System.currentTimeMillis();
+    }
+
+    private static ExpiryEngine<Integer> create(String engineType) {
+        return switch (engineType) {
+            case "ring" -> new TtlEngine<>(TTL, null);
+            default -> new TimingWheel<>(TTL, null);
+        };
+    }
+
+    @Benchmark
+    public void touch() {
+        engine.touch(nodes[(index += 0x9E3779B9) & MASK], now);
+    }
+
+    @Benchmark
+    public void replace() {
+        var i = index++ & MASK;
+        engine.remove(nodes[i]);
+        nodes[i] = engine.add(i);
+    }
+
+    // 时钟每次前进 1ms 且无条目到期，衡量读线程内联调用 expire 的固定成本
+    @Benchmark
+    public void expire() {
+        engine.expire(++now);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExpiryEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,35 @@
+package org.canoegame.util;
+
+import junit.framework.TestCase;
+
+public class FingerprintFilterTest extends TestCase {
+
+    public void testAddRemove() {
+        var filter = new FingerprintFilter(16);
+        assertFalse(filter.contains(42));
+        filter.add(42);
+        filter.add(42);
+        assertTrue(filter.contains(42));
+        assertEquals(1, filter.size());
+
+        // 0 与空槽区分
+        filter.add(0);
+        assertTrue(filter.contains(0));
+
+        assertTrue(filter.remove(42));
+        assertFalse(filter.contains(42));
+        assertFalse(filter.remove(42));
+    }
+
+    public void testBounded() {
+        var filter = new FingerprintFilter(64);
+        var capacity = filter.capacity();
+        for (long i = 1; i <= 10_000; i++) {
+            filter.add(i * 0x9E3779B97F4A7C15L);
+        }
+
+        assertTrue(filter.size() <= capacity);
+        // 最近加入的指纹一定还在
+        assertTrue(filter.contains(10_000L * 0x9E3779B97F4A7C15L));
+    }
+}
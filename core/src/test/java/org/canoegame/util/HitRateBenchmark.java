@@ -0,0 +1,103 @@
+package org.canoegame.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongConsumer;
+
+// 在访问轨迹上对比 W-TinyLFU 与 LRU 的命中率。
+// 用法：HitRateBenchmark [trace 文件] [容量...]，trace 每行一个 long 型 key；
+// 不指定文件时使用 Zipf 分布的热点访问混合周期性全表扫描的合成轨迹
+public class HitRateBenchmark {
+    private static final int KEYS = 100_000;
+    private static final int REQUESTS = 2_000_000;
+    private static final int SCAN_INTERVAL = 200_000;
+    private static final int SCAN_LENGTH = 20_000;
+
+    public static void main(String[] args) throws IOException {
+        var trace = args.length > 0 ? Files.readAllLines(Path.of(args[0])).stream()
+                .filter(line -> !line.isBlank())
+                .mapToLong(line -> Long.parseLong(line.trim()))
+                .toArray() : synthetic();
+
+        var capacities = args.length > 1 ? new long[args.length - 1] : new long[]{1_000, 5_000, 20_000};
+        for (var i = 1; i < args.length; i++) {
+            capacities[i - 1] = Long.parseLong(args[i]);
+        }
+
+        System.out.printf("%-10s %10s %10s%n", "capacity", "lru", "w-tinylfu");
+        for (var capacity : capacities) {
+            System.out.printf("%-10d %9.2f%% %9.2f%%%n", capacity,
+                    replay(trace, lru(capacity)) * 100, replay(trace, tinyLfu(capacity)) * 100);
+        }
+    }
+
+    private static long[] synthetic() {
+        var random = new Random(42);
+        var cdf = new double[KEYS];
+        var sum = 0.0;
+        for (var i = 0; i < KEYS; i++) {
+            sum += 1.0 / Math.pow(i + 1, 0.9);
+            cdf[i] = sum;
+        }
+
+        var trace = new long[REQUESTS];
+        var scanKey = (long) KEYS;
+        for (var i = 0; i < REQUESTS; i++) {
+            if (i % SCAN_INTERVAL < SCAN_LENGTH) {
+                trace[i] = scanKey++;
+                continue;
+            }
+
+            var index = java.util.Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = index < 0 ? -index - 1 : index;
+        }
+        return trace;
+    }
+
+    private static double replay(long[] trace, Policy policy) {
+        var hits = 0L;
+        for (var key : trace) {
+            if (policy.access(key)) {
+                hits++;
+            }
+        }
+        return (double) hits / trace.length;
+    }
+
+    private interface Policy {
+        boolean access(long key);
+    }
+
+    private static Policy lru(long capacity) {
+        var map = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > capacity;
+            }
+        };
+        return key -> map.put(key, Boolean.TRUE) != null;
+    }
+
+    private static Policy tinyLfu(long capacity) {
+        var nodes = new HashMap<Long, WTinyLfu.Node<Long>>();
+        LongConsumer onEvict = nodes::remove;
+        var policy = new WTinyLfu<Long>(capacity, onEvict::accept);
+        return key -> {
+            var node = nodes.get(key);
+            if (node != null) {
+                policy.touch(node);
+                return true;
+            }
+
+            var added = policy.add(key, Long.hashCode(key), 1);
+            if (!added.isEvicted()) {
+                nodes.put(key, added);
+            }
+            return false;
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package org.canoegame.util;
+
+import junit.framework.TestCase;
+
+public class MpscQueueTest extends TestCase {
+
+    public void testOfferAndPoll() {
+        var queue = new MpscQueue<Integer>(4);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        // 跨过多个块
+        for (var i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        assertEquals(10, queue.size());
+        for (var i = 0; i < 10; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    public void testProducers() throws InterruptedException {
+        var queue = new MpscQueue<long[]>(8);
+        var threads = new Thread[4];
+        var count = 10000;
+        for (var t = 0; t < threads.length; t++) {
+            var producer = t;
+            threads[t] = new Thread(() -> {
+                for (var i = 0; i < count; i++) {
+                    queue.offer(new long[]{producer, i});
+                }
+            });
+            threads[t].start();
+        }
+
+        // 每个生产者的元素按各自的顺序出队，一个不少
+        var next = new long[threads.length];
+        var received = 0;
+        while (received < threads.length * count) {
+            var e = queue.poll();
+            if (e == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            assertEquals(next[(int) e[0]]++, e[1]);
+            received++;
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package org.canoegame.util;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+public class OffHeapStoreTest extends TestCase {
+
+    public void testPutGetFree() {
+        var store = new OffHeapStore(1 << 16, 1 << 12);
+        var small = new byte[]{1, 2, 3};
+        var large = new byte[1000];
+        Arrays.fill(large, (byte) 7);
+
+        var h1 = store.put(small);
+        var h2 = store.put(large);
+        assertTrue(Arrays.equals(small, store.get(h1)));
+        assertTrue(Arrays.equals(large, store.get(h2)));
+        assertEquals(64 + 1024, store.getUsedBytes());
+
+        // 释放的块被同样大小的字节串复用
+        store.free(h1);
+        assertEquals(1024, store.getUsedBytes());
+        var h3 = store.put(new byte[]{4, 5});
+        assertEquals(h1, h3);
+        assertTrue(Arrays.equals(new byte[]{4, 5}, store.get(h3)));
+    }
+
+    public void testCapacity() {
+        var store = new OffHeapStore(1 << 13, 1 << 12);
+        assertEquals(OffHeapStore.NONE, store.put(new byte[1 << 12]));
+
+        var count = 0;
+        while (store.put(new byte[1000]) != OffHeapStore.NONE) {
+            count++;
+        }
+        assertEquals(8, count);
+        assertEquals(1 << 13, store.getReservedBytes());
+    }
+}
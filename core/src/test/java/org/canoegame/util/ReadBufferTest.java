@@ -0,0 +1,57 @@
+package org.canoegame.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+public class ReadBufferTest extends TestCase {
+
+    public void testOfferAndDrain() {
+        var buffer = new ReadBuffer<Integer>(4);
+        assertTrue(buffer.offer(1));
+        assertTrue(buffer.offer(2));
+        assertEquals(2, buffer.size());
+
+        var drained = new ArrayList<Integer>();
+        buffer.drainTo(drained::add);
+        assertEquals(2, drained.size());
+        assertEquals(Integer.valueOf(1), drained.get(0));
+        assertEquals(Integer.valueOf(2), drained.get(1));
+        assertEquals(0, buffer.size());
+    }
+
+    public void testLossyWhenFull() {
+        var buffer = new ReadBuffer<Integer>(4);
+        for (var i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        var drained = new ArrayList<Integer>();
+        buffer.drainTo(drained::add);
+        assertEquals(4, drained.size());
+        assertTrue(buffer.offer(5));
+    }
+
+    public void testStriped() throws InterruptedException {
+        var buffer = new StripedReadBuffer<Integer>(4, 64);
+        var threads = new Thread[4];
+        for (var t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (var i = 0; i < 16; i++) {
+                    buffer.offer(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+
+        var drained = new ArrayList<Integer>();
+        buffer.drainTo(drained::add);
+        assertTrue(drained.size() > 0);
+        assertTrue(drained.size() <= 64);
+        assertEquals(0, buffer.size());
+    }
+}
@@ -0,0 +1,71 @@
+package org.canoegame.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TimingWheelTest extends TestCase {
+
+    public void testPerEntryTtl() {
+        var expired = new ArrayList<Integer>();
+        var wheel = new TimingWheel<Integer>(1000, expired::add);
+        var now = System.currentTimeMillis();
+        var node1 = wheel.add(1);
+        var node2 = wheel.add(2, TimeUnit.MINUTES.toMillis(10));
+
+        wheel.expire(now + 2000);
+        assertTrue(node1.isExpired());
+        assertFalse(node2.isExpired());
+        assertEquals(List.of(1), expired);
+
+        wheel.expire(now + TimeUnit.MINUTES.toMillis(9));
+        assertFalse(node2.isExpired());
+
+        wheel.expire(now + TimeUnit.MINUTES.toMillis(11));
+        assertTrue(node2.isExpired());
+        assertEquals(List.of(1, 2), expired);
+    }
+
+    public void testTouch() {
+        var wheel = new TimingWheel<Integer>(1000, null);
+        var now = System.currentTimeMillis();
+        var node = wheel.add(1);
+
+        wheel.touch(node, now + 900);
+        wheel.expire(now + 1500);
+        assertFalse(node.isExpired());
+        assertTrue(wheel.isAlive(node, now + 1500));
+        assertFalse(wheel.isAlive(node, now + 1900));
+
+        wheel.expire(now + 2000);
+        assertTrue(node.isExpired());
+    }
+
+    public void testSetTtl() {
+        var wheel = new TimingWheel<Integer>(1000, null);
+        var now = System.currentTimeMillis();
+        var node = wheel.add(1);
+
+        wheel.setTtl(node, TimeUnit.HOURS.toMillis(1), now);
+        wheel.expire(now + TimeUnit.MINUTES.toMillis(59));
+        assertFalse(node.isExpired());
+        wheel.expire(now + TimeUnit.MINUTES.toMillis(61));
+        assertTrue(node.isExpired());
+    }
+
+    public void testRemove() {
+        var expired = new ArrayList<Integer>();
+        var wheel = new TimingWheel<Integer>(1000, expired::add);
+        var now = System.currentTimeMillis();
+        var node1 = wheel.add(1);
+        var node2 = wheel.add(2);
+
+        wheel.remove(node1);
+        assertTrue(node1.isExpired());
+        wheel.expire(now + 2000);
+        assertTrue(node2.isExpired());
+        assertEquals(List.of(2), expired);
+    }
+}
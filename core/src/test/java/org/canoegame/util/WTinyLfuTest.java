@@ -0,0 +1,59 @@
+package org.canoegame.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+public class WTinyLfuTest extends TestCase {
+
+    public void testMaximumWeight() {
+        var evicted = new ArrayList<Integer>();
+        var policy = new WTinyLfu<Integer>(10, evicted::add);
+        for (var i = 0; i < 100; i++) {
+            policy.add(i, Integer.hashCode(i), 1);
+        }
+
+        assertEquals(10, policy.size());
+        assertEquals(10, policy.getWeightedSize());
+        assertEquals(90, evicted.size());
+    }
+
+    public void testWeight() {
+        var policy = new WTinyLfu<Integer>(10, null);
+        var node = policy.add(1, 1, 4);
+        policy.add(2, 2, 4);
+        assertEquals(8, policy.getWeightedSize());
+
+        policy.update(node, 20);
+        assertTrue(node.isEvicted());
+        assertEquals(4, policy.getWeightedSize());
+    }
+
+    public void testScanResistance() {
+        var policy = new WTinyLfu<Integer>(100, null);
+        var nodes = new HashMap<Integer, WTinyLfu.Node<Integer>>();
+        for (var i = 0; i < 50; i++) {
+            nodes.put(i, policy.add(i, Integer.hashCode(i), 1));
+        }
+        for (var round = 0; round < 10; round++) {
+            for (var i = 0; i < 50; i++) {
+                policy.touch(nodes.get(i));
+            }
+        }
+
+        // 一次性扫描大量冷数据
+        for (var i = 1000; i < 11000; i++) {
+            policy.add(i, Integer.hashCode(i), 1);
+        }
+
+        var survived = 0;
+        for (var node : nodes.values()) {
+            if (!node.isEvicted()) {
+                survived++;
+            }
+        }
+        assertTrue("hot entries survived: " + survived, survived >= 45);
+        assertEquals(100, policy.getWeightedSize());
+    }
+}
@@ -86,7 +86,7 @@ private static final long serialVersionUID = 0L;
   public static final int ID_FIELD_NUMBER = 2;
   private int id_;
   /**
-   * <code>int32 id = 2;</code>
+   * <code>int32 id = 2 [(.entity.pk) = true];</code>
    * @return The id.
    */
   @java.lang.Override
@@ -632,7 +632,7 @@ private static final long serialVersionUID = 0L;
 
     private int id_ ;
     /**
-     * <code>int32 id = 2;</code>
+     * <code>int32 id = 2 [(.entity.pk) = true];</code>
      * @return The id.
      */
     @java.lang.Override
@@ -640,7 +640,7 @@ private static final long serialVersionUID = 0L;
       return id_;
     }
     /**
-     * <code>int32 id = 2;</code>
+     * <code>int32 id = 2 [(.entity.pk) = true];</code>
      * @param value The id to set.
      * @return This builder for chaining.
      */
@@ -651,7 +651,7 @@ private static final long serialVersionUID = 0L;
       return this;
     }
     /**
-     * <code>int32 id = 2;</code>
+     * <code>int32 id = 2 [(.entity.pk) = true];</code>
      * @return This builder for chaining.
      */
     public Builder clearId() {
@@ -1,15 +1,31 @@
-package org.canoegame.example
+package org.canoegame.example;
 
+import com.google.protobuf.CodedOutputStream;
 import org.canoegame.entity.Entity;
 import org.canoegame.entity.Commitment;
+import org.canoegame.entity.DeltaCommitment;
 import org.canoegame.entity.FieldSet;
 import org.canoegame.entity.Key;
+import org.canoegame.entity.KeyEncoder;
+
+import java.io.IOException;
 
 abstract public class PersonEntityBase<E extends PersonEntityBase<E>> extends Entity<E, PersonEntityBase.Field> {
 
     @Override
     protected Commitment createCommitment(FieldSet<Field> changes) {
-        return null;
+        return DeltaCommitment.of(PersonEntityBase.class, getKey(), Commitment.Kind.of(getLifecycle()),
+                changes, this::writeField);
+    }
+
+    // 只序列化本次提交改动的字段
+    private void writeField(CodedOutputStream out, Field field) throws IOException {
+        switch (field) {
+            case NAME -> out.writeString(1, this.name);
+            case ID -> out.writeInt32(2, this.id);
+            case EMAIL -> out.writeString(3, this.email);
+            case HELLO -> { var v = this.hello; if (v != null) { out.writeMessage(4, v); } }
+        }
     }
 
     public enum Field implements org.canoegame.entity.Field {
@@ -42,9 +58,70 @@ abstract public class PersonEntityBase<E extends PersonEntityBase<E>> extends En
         }
     }
 
+    // copyWrite 得到的副本与缓存中的快照共享全部字段值，setter 只替换写过的字段；
+    // repeated 与 map 字段保存为不可变集合，message 本身不可变，副本之间因此不会相互影响
+    private String name = "";
+    private int id;
+    private String email = "";
+    private org.canoegame.example.Hello hello;
+    // 内部成员以 __ 开头，不会与字段生成的成员重名
+    // 每次提交加一，提交时据此检查快照是否已被其他副本修改；不落盘
+    private int __revision;
+    private Key<E> __key;
+
+    public static <E extends PersonEntityBase<E>> Key<E> key(int id) {
+        return new KeyEncoder().writeInt(id).toKey(PersonEntityBase.class);
+    }
+
+    // 主键字段创建后不再改变，编码结果可以缓存
     @Override
     public Key<E> getKey() {
-        return null;
+        if (__key == null) {
+            __key = key(id);
+        }
+        return __key;
+    }
+
+    public String getName() {
+        validateRead();
+        return name;
+    }
+
+    public void setName(String name) {
+        Change(Field.NAME);
+        this.name = name;
+    }
+
+    public int getId() {
+        validateRead();
+        return id;
+    }
+
+    protected void setId(int id) {
+        if (__key != null) {
+            throw new IllegalStateException("Primary key already in use");
+        }
+        this.id = id;
+    }
+
+    public String getEmail() {
+        validateRead();
+        return email;
+    }
+
+    public void setEmail(String email) {
+        Change(Field.EMAIL);
+        this.email = email;
+    }
+
+    public org.canoegame.example.Hello getHello() {
+        validateRead();
+        return hello;
+    }
+
+    public void setHello(org.canoegame.example.Hello hello) {
+        Change(Field.HELLO);
+        this.hello = hello;
     }
 
     @Override
@@ -54,11 +131,11 @@ abstract public class PersonEntityBase<E extends PersonEntityBase<E>> extends En
 
     @Override
     protected void incrementRevision() {
-
+        __revision++;
     }
 
     @Override
     public int getRevision() {
-        return 0;
+        return __revision;
     }
 }
@@ -20,7 +20,7 @@ public interface PersonOrBuilder extends
       getNameBytes();
 
   /**
-   * <code>int32 id = 2;</code>
+   * <code>int32 id = 2 [(.entity.pk) = true];</code>
    * @return The id.
    */
   int getId();
@@ -29,11 +29,11 @@ public final class Test {
   static {
     java.lang.String[] descriptorData = {
       "\n\ntest.proto\022\010protocol\032\017extension.proto\032" +
-      "\013test1.proto\"[\n\006Person\022\014\n\004name\030\001 \001(\t\022\n\n\002" +
-      "id\030\002 \001(\005\022\r\n\005email\030\003 \001(\t\022\036\n\005hello\030\004 \001(\0132\017" +
-      ".protocol.Hello:\010\312\325\"\004haha*+\n\tPhoneType\022\n" +
-      "\n\006MOBILE\020\000\022\010\n\004HOME\020\001\022\010\n\004WORK\020\002B\031\n\025org.ca" +
-      "noegame.exampleP\001b\006proto3"
+      "\013test1.proto\"a\n\006Person\022\014\n\004name\030\001 \001(\t\022\020\n\002" +
+      "id\030\002 \001(\005B\004\210\224#\001\022\r\n\005email\030\003 \001(\t\022\036\n\005hello\030\004" +
+      " \001(\0132\017.protocol.Hello:\010\312\325\"\004haha*+\n\tPhone" +
+      "Type\022\n\n\006MOBILE\020\000\022\010\n\004HOME\020\001\022\010\n\004WORK\020\002B\031\n\025" +
+      "org.canoegame.exampleP\001b\006proto3"
     };
     descriptor = com.google.protobuf.Descriptors.FileDescriptor
       .internalBuildGeneratedFileFrom(descriptorData,
@@ -50,6 +50,7 @@ public final class Test {
     com.google.protobuf.ExtensionRegistry registry =
         com.google.protobuf.ExtensionRegistry.newInstance();
     registry.add(org.canoegame.entity.Extension.database);
+    registry.add(org.canoegame.entity.Extension.pk);
     com.google.protobuf.Descriptors.FileDescriptor
         .internalUpdateFileDescriptor(descriptor, registry);
     org.canoegame.entity.Extension.getDescriptor();
@@ -1,17 +1,25 @@
 package canoegame.protoc.entity;
 
 import com.google.protobuf.DescriptorProtos;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto.Type;
 import com.salesforce.jprotoc.ProtoTypeMap;
+import org.canoegame.entity.Extension;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class EntityContext {
     public static final String SUFFIX = "EntityBase";
+    // 生成的 get/set 会与 Entity 自身的方法重名或覆盖它们
+    private static final Set<String> RESERVED = Set.of("Key", "Revision", "Lifecycle", "FieldClass",
+            "EntityManager", "Flag");
 
     private final String pkg;
     private final DescriptorProtos.DescriptorProto message;
     private final List<Field> fields;
+    private final List<Field> pkFields;
 
     private final ProtoTypeMap protoTypeMap;
 
@@ -20,8 +28,25 @@ public class EntityContext {
         this.message = message;
         this.protoTypeMap = protoTypeMap;
         fields = new ArrayList<>();
+        pkFields = new ArrayList<>();
         for (var field : message.getFieldList()) {
-            fields.add(new Field(field.getName(), field.getNumber()));
+            // group 是 proto2 已废弃的写法，不生成对应的字段
+            if (field.getType() == Type.TYPE_GROUP) {
+                System.err.println("Skip group field " + message.getName() + "." + field.getName());
+                continue;
+            }
+
+            var f = Field.of(message, field, protoTypeMap);
+            if (RESERVED.contains(f.getCamelName())) {
+                throw new IllegalArgumentException("Reserved field name " + message.getName() + "."
+                        + field.getName() + ": get" + f.getCamelName() + "/set" + f.getCamelName()
+                        + " clash with Entity methods");
+            }
+            if (field.getOptions().getExtension(Extension.pk)) {
+                f = f.withType(field.getType());
+                pkFields.add(f);
+            }
+            fields.add(f);
         }
     }
 
@@ -33,6 +58,35 @@ public class EntityContext {
         return fields;
     }
 
+    public List<Field> getPkFields() {
+        return pkFields;
+    }
+
+    public boolean hasPk() {
+        return !pkFields.isEmpty();
+    }
+
+    // 主键字段的每个真前缀各生成一个 prefix 方法
+    public List<KeyPrefix> getPkPrefixes() {
+        var prefixes = new ArrayList<KeyPrefix>();
+        for (var i = 1; i < pkFields.size(); i++) {
+            prefixes.add(new KeyPrefix(pkFields.subList(0, i)));
+        }
+        return prefixes;
+    }
+
+    public String getPkParams() {
+        return KeyPrefix.params(pkFields);
+    }
+
+    public String getPkArgs() {
+        return KeyPrefix.args(pkFields);
+    }
+
+    public String getPkEncoder() {
+        return KeyPrefix.encoder(pkFields);
+    }
+
     public String getPkg() {
         return pkg;
     }
@@ -49,9 +103,225 @@ public class EntityContext {
         return pkg.replace(".", "/") + "/" + getClassName() + ".java";
     }
 
-    public record Field(String name, int number) {
+    // writer 为主键字段的 KeyEncoder 写入方法，serializer 为把字段写入 CodedOutputStream out 的语句
+    // defaultValue 为字段的初始值表达式，基本类型为 null，沿用 Java 默认值
+    public record Field(String name, int number, String javaType, String writer, String serializer,
+                        boolean repeated, boolean map, String defaultValue) {
+        static Field of(DescriptorProtos.DescriptorProto message, FieldDescriptorProto field,
+                        ProtoTypeMap protoTypeMap) {
+            var name = field.getName();
+            var number = field.getNumber();
+            // 直接读字段，序列化不经过 getter 的访问校验
+            var getter = "this." + javaName(name);
+            var repeated = field.getLabel() == FieldDescriptorProto.Label.LABEL_REPEATED;
+            var entry = repeated ? mapEntry(message, field) : null;
+            if (entry != null) {
+                return ofMap(field, entry, protoTypeMap);
+            }
+
+            var type = WireType.of(field, protoTypeMap);
+            String serializer;
+            if (repeated) {
+                serializer = "{ for (var v : " + getter + ") { " + type.write(number, "v") + " } }";
+            } else if (field.getType() == Type.TYPE_MESSAGE) {
+                // 未设置的 message 字段不写，即清为默认值
+                serializer = "{ var v = " + getter + "; if (v != null) { " + type.write(number, "v") + " } }";
+            } else {
+                serializer = type.write(number, getter);
+            }
+
+            var javaType = repeated ? "java.util.List<" + type.boxed() + ">" : type.javaType();
+            String defaultValue;
+            if (repeated) {
+                defaultValue = "java.util.List.of()";
+            } else {
+                defaultValue = switch (field.getType()) {
+                    case TYPE_STRING -> "\"\"";
+                    case TYPE_BYTES -> "com.google.protobuf.ByteString.EMPTY";
+                    case TYPE_ENUM -> type.javaType() + ".forNumber(0)";
+                    default -> null;
+                };
+            }
+            return new Field(name, number, javaType, null, serializer, repeated, false, defaultValue);
+        }
+
+        // map 字段按 protobuf 的线上格式逐条写成 key 为 1、value 为 2 的嵌套消息
+        private static Field ofMap(FieldDescriptorProto field, DescriptorProtos.DescriptorProto entry,
+                                   ProtoTypeMap protoTypeMap) {
+            var name = field.getName();
+            var number = field.getNumber();
+            var key = WireType.of(entry.getField(0), protoTypeMap);
+            var value = WireType.of(entry.getField(1), protoTypeMap);
+            var serializer = "{ for (var e : this." + javaName(name) + ".entrySet()) { "
+                    + "out.writeTag(" + number + ", com.google.protobuf.WireFormat.WIRETYPE_LENGTH_DELIMITED); "
+                    + "out.writeUInt32NoTag(" + key.size(1, "e.getKey()") + " + " + value.size(2, "e.getValue()")
+                    + "); " + key.write(1, "e.getKey()") + " " + value.write(2, "e.getValue()") + " } }";
+            var javaType = "java.util.Map<" + key.boxed() + ", " + value.boxed() + ">";
+            return new Field(name, number, javaType, null, serializer, true, true, "java.util.Map.of()");
+        }
+
+        private static DescriptorProtos.DescriptorProto mapEntry(DescriptorProtos.DescriptorProto message,
+                                                                 FieldDescriptorProto field) {
+            if (field.getType() != Type.TYPE_MESSAGE) {
+                return null;
+            }
+
+            var typeName = field.getTypeName();
+            var simpleName = typeName.substring(typeName.lastIndexOf('.') + 1);
+            for (var nested : message.getNestedTypeList()) {
+                if (nested.getName().equals(simpleName) && nested.getOptions().getMapEntry()) {
+                    return nested;
+                }
+            }
+            return null;
+        }
+
         public String getUpperName() {
             return name.toUpperCase();
         }
+
+        public String getJavaName() {
+            return javaName(name);
+        }
+
+        public boolean isPk() {
+            return writer != null;
+        }
+
+        // setter 中保存的值：repeated 与 map 字段复制成不可变集合，副本之间不会共享可变状态；message 本身不可变
+        public String getCopy() {
+            if (map) {
+                return "java.util.Map.copyOf(" + getJavaName() + ")";
+            }
+            return repeated ? "java.util.List.copyOf(" + getJavaName() + ")" : getJavaName();
+        }
+
+        private static String javaName(String name) {
+            var camel = camel(name);
+            return Character.toLowerCase(camel.charAt(0)) + camel.substring(1);
+        }
+
+        public String getCamelName() {
+            return camel(name);
+        }
+
+        private static String camel(String name) {
+            var sb = new StringBuilder();
+            for (var part : name.split("_")) {
+                if (!part.isEmpty()) {
+                    sb.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+                }
+            }
+            return sb.toString();
+        }
+
+        // 主键字段按类型选择 KeyEncoder 的写入方法，需保证编码顺序与值的自然顺序一致
+        Field withType(Type type) {
+            if (repeated) {
+                throw new IllegalArgumentException("Unsupported repeated pk field " + name);
+            }
+
+            return switch (type) {
+                case TYPE_INT32, TYPE_SINT32, TYPE_SFIXED32 -> withWriter("int", "writeInt(%s)");
+                case TYPE_UINT32, TYPE_FIXED32 -> withWriter("int", "writeUnsignedInt(%s)");
+                case TYPE_INT64, TYPE_SINT64, TYPE_SFIXED64 -> withWriter("long", "writeLong(%s)");
+                case TYPE_UINT64, TYPE_FIXED64 -> withWriter("long", "writeUnsignedLong(%s)");
+                case TYPE_FLOAT -> withWriter("float", "writeFloat(%s)");
+                case TYPE_DOUBLE -> withWriter("double", "writeDouble(%s)");
+                case TYPE_BOOL -> withWriter("boolean", "writeBoolean(%s)");
+                case TYPE_STRING -> withWriter("String", "writeString(%s)");
+                case TYPE_BYTES -> withWriter("com.google.protobuf.ByteString", "writeBytes(%s.toByteArray())");
+                default -> throw new IllegalArgumentException("Unsupported pk type " + type + " of field " + name);
+            };
+        }
+
+        private Field withWriter(String javaType, String writer) {
+            return new Field(name, number, javaType, writer, serializer, false, false, defaultValue);
+        }
+    }
+
+    // method 为 CodedOutputStream 的写入方法，去掉 write 前缀即为对应的 compute...Size
+    private record WireType(String javaType, String boxed, String method, boolean enumType) {
+        static WireType of(FieldDescriptorProto field, ProtoTypeMap protoTypeMap) {
+            return switch (field.getType()) {
+                case TYPE_INT32 -> new WireType("int", "Integer", "writeInt32", false);
+                case TYPE_SINT32 -> new WireType("int", "Integer", "writeSInt32", false);
+                case TYPE_SFIXED32 -> new WireType("int", "Integer", "writeSFixed32", false);
+                case TYPE_UINT32 -> new WireType("int", "Integer", "writeUInt32", false);
+                case TYPE_FIXED32 -> new WireType("int", "Integer", "writeFixed32", false);
+                case TYPE_INT64 -> new WireType("long", "Long", "writeInt64", false);
+                case TYPE_SINT64 -> new WireType("long", "Long", "writeSInt64", false);
+                case TYPE_SFIXED64 -> new WireType("long", "Long", "writeSFixed64", false);
+                case TYPE_UINT64 -> new WireType("long", "Long", "writeUInt64", false);
+                case TYPE_FIXED64 -> new WireType("long", "Long", "writeFixed64", false);
+                case TYPE_FLOAT -> new WireType("float", "Float", "writeFloat", false);
+                case TYPE_DOUBLE -> new WireType("double", "Double", "writeDouble", false);
+                case TYPE_BOOL -> new WireType("boolean", "Boolean", "writeBool", false);
+                case TYPE_STRING -> new WireType("String", "String", "writeString", false);
+                case TYPE_BYTES -> new WireType("com.google.protobuf.ByteString", "com.google.protobuf.ByteString",
+                        "writeBytes", false);
+                case TYPE_ENUM -> {
+                    var javaType = protoTypeMap.toJavaTypeName(field.getTypeName());
+                    yield new WireType(javaType, javaType, "writeEnum", true);
+                }
+                case TYPE_MESSAGE -> {
+                    var javaType = protoTypeMap.toJavaTypeName(field.getTypeName());
+                    yield new WireType(javaType, javaType, "writeMessage", false);
+                }
+                default -> throw new IllegalArgumentException(
+                        "Unsupported type " + field.getType() + " of field " + field.getName());
+            };
+        }
+
+        String write(int number, String value) {
+            return "out." + method + "(" + number + ", " + wireValue(value) + ");";
+        }
+
+        String size(int number, String value) {
+            return "CodedOutputStream.compute" + method.substring("write".length()) + "Size(" + number + ", "
+                    + wireValue(value) + ")";
+        }
+
+        private String wireValue(String value) {
+            return enumType ? value + ".getNumber()" : value;
+        }
+    }
+
+    public record KeyPrefix(List<Field> fields) {
+        public String getParams() {
+            return params(fields);
+        }
+
+        public String getArgs() {
+            return args(fields);
+        }
+
+        public String getEncoder() {
+            return encoder(fields);
+        }
+
+        static String params(List<Field> fields) {
+            var params = new ArrayList<String>();
+            for (var f : fields) {
+                params.add(f.javaType() + " " + f.getJavaName());
+            }
+            return String.join(", ", params);
+        }
+
+        static String args(List<Field> fields) {
+            var args = new ArrayList<String>();
+            for (var f : fields) {
+                args.add(f.getJavaName());
+            }
+            return String.join(", ", args);
+        }
+
+        static String encoder(List<Field> fields) {
+            var sb = new StringBuilder("new KeyEncoder()");
+            for (var f : fields) {
+                sb.append('.').append(String.format(f.writer(), f.getJavaName()));
+            }
+            return sb.toString();
+        }
     }
 }
@@ -17,10 +17,10 @@ public class EntityGenerator extends Generator {
     public static void main(String[] args) {
         if (args.length == 0) {
             // Generate from protoc via stdin
-            ProtocPlugin.generate(List.of(new EntityGenerator()), List.of(Extension.database));
+            ProtocPlugin.generate(List.of(new EntityGenerator()), List.of(Extension.database, Extension.pk));
         } else {
             // Process from a descriptor_dump file via command line arg
-            ProtocPlugin.debug(List.of(new EntityGenerator()), List.of(Extension.database), args[0]);
+            ProtocPlugin.debug(List.of(new EntityGenerator()), List.of(Extension.database, Extension.pk), args[0]);
         }
     }
 
@@ -0,0 +1,92 @@
+package canoegame.protoc.entity;
+
+import com.google.protobuf.DescriptorProtos.DescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FieldOptions;
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+import com.google.protobuf.DescriptorProtos.FileOptions;
+import com.google.protobuf.DescriptorProtos.MessageOptions;
+import com.google.protobuf.compiler.PluginProtos;
+import junit.framework.TestCase;
+import org.canoegame.entity.Extension;
+
+public class EntityGeneratorTest extends TestCase {
+    private static FieldDescriptorProto field(String name, int number, FieldDescriptorProto.Type type) {
+        return FieldDescriptorProto.newBuilder()
+                .setName(name)
+                .setNumber(number)
+                .setLabel(FieldDescriptorProto.Label.LABEL_OPTIONAL)
+                .setType(type)
+                .build();
+    }
+
+    private static String generate(DescriptorProto message) throws Exception {
+        var file = FileDescriptorProto.newBuilder()
+                .setName("player.proto")
+                .setPackage("test")
+                .setSyntax("proto3")
+                .setOptions(FileOptions.newBuilder().setJavaPackage("org.canoegame.test").setJavaMultipleFiles(true))
+                .addMessageType(message)
+                .build();
+        var request = PluginProtos.CodeGeneratorRequest.newBuilder()
+                .addFileToGenerate(file.getName())
+                .addProtoFile(file)
+                .build();
+        var files = new EntityGenerator().generate(request).toList();
+        assertEquals(1, files.size());
+        assertEquals("org/canoegame/test/PlayerEntityBase.java", files.get(0).getName());
+        return files.get(0).getContent();
+    }
+
+    private static DescriptorProto.Builder player() {
+        var id = field("id", 1, FieldDescriptorProto.Type.TYPE_INT64).toBuilder()
+                .setOptions(FieldOptions.newBuilder().setExtension(Extension.pk, true));
+        return DescriptorProto.newBuilder()
+                .setName("Player")
+                .setOptions(MessageOptions.newBuilder().setExtension(Extension.database, "game"))
+                .addField(id);
+    }
+
+    public void testMapField() throws Exception {
+        var entry = DescriptorProto.newBuilder()
+                .setName("ScoresEntry")
+                .setOptions(MessageOptions.newBuilder().setMapEntry(true))
+                .addField(field("key", 1, FieldDescriptorProto.Type.TYPE_STRING))
+                .addField(field("value", 2, FieldDescriptorProto.Type.TYPE_INT32));
+        var scores = FieldDescriptorProto.newBuilder()
+                .setName("scores")
+                .setNumber(2)
+                .setLabel(FieldDescriptorProto.Label.LABEL_REPEATED)
+                .setType(FieldDescriptorProto.Type.TYPE_MESSAGE)
+                .setTypeName(".test.Player.ScoresEntry");
+        var content = generate(player().addNestedType(entry).addField(scores).build());
+
+        assertTrue(content.contains("private java.util.Map<String, Integer> scores = java.util.Map.of();"));
+        assertTrue(content.contains("this.scores = java.util.Map.copyOf(scores);"));
+        assertTrue(content.contains("case SCORES -> { for (var e : this.scores.entrySet()) { "
+                + "out.writeTag(2, com.google.protobuf.WireFormat.WIRETYPE_LENGTH_DELIMITED); "
+                + "out.writeUInt32NoTag(CodedOutputStream.computeStringSize(1, e.getKey())"
+                + " + CodedOutputStream.computeInt32Size(2, e.getValue())); "
+                + "out.writeString(1, e.getKey()); out.writeInt32(2, e.getValue()); } }"));
+    }
+
+    public void testReservedFieldName() throws Exception {
+        for (var name : new String[]{"key", "revision", "lifecycle"}) {
+            try {
+                generate(player().addField(field(name, 2, FieldDescriptorProto.Type.TYPE_STRING)).build());
+                fail(name);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("Player." + name));
+            }
+        }
+    }
+
+    public void testSkipGroupField() throws Exception {
+        var group = field("legacy", 2, FieldDescriptorProto.Type.TYPE_GROUP).toBuilder()
+                .setTypeName(".test.Player.Legacy");
+        var content = generate(player().addField(group).build());
+
+        assertTrue(content.contains("case ID -> out.writeInt64(1, this.id);"));
+        assertFalse(content.contains("legacy"));
+    }
+}